@@ -0,0 +1,251 @@
+package com.austinv11.bench;
+
+import java.util.Arrays;
+
+import static com.austinv11.bench.LongHashing.*;
+
+/**
+ * A long -> Object map tuned for maps which usually stay tiny.
+ *
+ * Up to {@link #PROMOTE_THRESHOLD} entries are kept in parallel key/value arrays which are scanned linearly, stopping
+ * at the first match. A scan which compares every entry without an early exit (a branch free counted loop) can be
+ * picked instead as an experiment, it measured slower on JDK 17 so it isn't the default. An empty map allocates no
+ * arrays at all. Past the threshold the map promotes itself (permanently) to a linear probing open addressing table
+ * which uses key 0 as the free marker, with the 0 key itself stored on the side.
+ */
+@SuppressWarnings("unchecked")
+public class AdaptiveLong2ObjectMap<V> {
+
+	public static final int PROMOTE_THRESHOLD = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private static final long[] EMPTY_KEYS = {};
+	private static final Object[] EMPTY_VALUES = {};
+
+	private final boolean branchFreeScan;
+	private long[] keys = EMPTY_KEYS;
+	private Object[] values = EMPTY_VALUES;
+	private int size;
+
+	//Only used once promoted
+	private boolean hashed;
+	private int mask, resizeAt;
+	private boolean hasZeroKey;
+	private Object zeroValue;
+
+	public AdaptiveLong2ObjectMap() {
+		this(0);
+	}
+
+	public AdaptiveLong2ObjectMap(int expectedSize) {
+		this(expectedSize, false);
+	}
+
+	public AdaptiveLong2ObjectMap(int expectedSize, boolean branchFreeScan) {
+		this.branchFreeScan = branchFreeScan;
+		if (expectedSize > PROMOTE_THRESHOLD) {
+			promote(expectedSize);
+		} else if (expectedSize > 0) {
+			keys = new long[expectedSize];
+			values = new Object[expectedSize];
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (!hashed)
+			return indexOf(key) >= 0;
+
+		if (key == 0)
+			return hasZeroKey;
+		return slotOf(key) >= 0;
+	}
+
+	public V get(long key) {
+		if (!hashed) {
+			int index = indexOf(key);
+			return index < 0 ? null : (V) values[index];
+		}
+
+		if (key == 0)
+			return (V) zeroValue;
+		long[] keys = this.keys;
+		int mask = this.mask;
+		int slot = mix(key) & mask;
+		long current;
+		while ((current = keys[slot]) != 0) {
+			if (current == key)
+				return (V) values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	public V put(long key, V value) {
+		if (!hashed) {
+			int index = indexOf(key);
+			if (index >= 0) {
+				V previous = (V) values[index];
+				values[index] = value;
+				return previous;
+			}
+
+			if (size < PROMOTE_THRESHOLD) {
+				if (size == keys.length) {
+					int capacity = Math.min(PROMOTE_THRESHOLD, Math.max(4, size * 2));
+					keys = Arrays.copyOf(keys, capacity);
+					values = Arrays.copyOf(values, capacity);
+				}
+				keys[size] = key;
+				values[size] = value;
+				size++;
+				return null;
+			}
+
+			promote(size + 1);
+		}
+
+		return hashedPut(key, value);
+	}
+
+	public V remove(long key) {
+		if (!hashed) {
+			int index = indexOf(key);
+			if (index < 0)
+				return null;
+
+			//Order doesn't matter, so the last entry fills the hole
+			V previous = (V) values[index];
+			int last = --size;
+			keys[index] = keys[last];
+			values[index] = values[last];
+			values[last] = null;
+			return previous;
+		}
+
+		if (key == 0) {
+			if (!hasZeroKey)
+				return null;
+			V previous = (V) zeroValue;
+			hasZeroKey = false;
+			zeroValue = null;
+			size--;
+			return previous;
+		}
+
+		int slot = slotOf(key);
+		if (slot < 0)
+			return null;
+		V previous = (V) values[slot];
+		shiftKeys(keys, values, mask, slot);
+		size--;
+		return previous;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		hasZeroKey = false;
+		zeroValue = null;
+		size = 0;
+	}
+
+	private int indexOf(long key) {
+		long[] keys = this.keys;
+		if (branchFreeScan) { //Every entry is compared, walking down so that the lowest match wins
+			int found = -1;
+			for (int i = size - 1; i >= 0; i--)
+				found = keys[i] == key ? i : found;
+			return found;
+		}
+
+		for (int i = 0, size = this.size; i < size; i++)
+			if (keys[i] == key)
+				return i;
+		return -1;
+	}
+
+	private int slotOf(long key) {
+		int slot = mix(key) & mask;
+		long current;
+		while ((current = keys[slot]) != 0) {
+			if (current == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private V hashedPut(long key, V value) {
+		if (key == 0) {
+			V previous = (V) zeroValue;
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroValue = value;
+			return previous;
+		}
+
+		int slot = mix(key) & mask;
+		long current;
+		while ((current = keys[slot]) != 0) {
+			if (current == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > resizeAt)
+			rehash(keys.length * 2);
+		return null;
+	}
+
+	private void promote(int expectedSize) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		int oldSize = size;
+
+		hashed = true;
+		size = 0;
+		allocate(tableSize(expectedSize, LOAD_FACTOR));
+		for (int i = 0; i < oldSize; i++)
+			hashedPut(oldKeys[i], (V) oldValues[i]);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		allocate(capacity);
+		long[] keys = this.keys;
+		int mask = this.mask;
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key == 0)
+				continue;
+			int slot = mix(key) & mask;
+			while (keys[slot] != 0)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+}
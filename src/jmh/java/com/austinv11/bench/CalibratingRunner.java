@@ -0,0 +1,163 @@
+package com.austinv11.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.ListStatistics;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks one fork at a time, and keeps adding forks to every benchmark (per mode and parameter combination)
+ * until the error of its score drops below a target fraction of the score, or it runs out of forks. Benchmarks which
+ * are stable stop early, so the time goes to the noisy ones.
+ *
+ * Takes the usual JMH command line (the fork count is ignored) plus these system properties:
+ * <ul>
+ *     <li>{@code bench.targetError}: relative error to stop at, at JMH's 99.9% confidence level (default 0.02)</li>
+ *     <li>{@code bench.maxForks}: forks to give up after (default 10)</li>
+ *     <li>{@code bench.jvmArgs.<name>}: a JVM argument set every fork is started with, the whole calibration is
+ *     repeated for each set given</li>
+ *     <li>{@code bench.result}: CSV file to write the calibrated scores to</li>
+ * </ul>
+ */
+public class CalibratingRunner {
+
+	private static final double CONFIDENCE = 0.999; //The level JMH reports its score error at
+	private static final String JVM_ARGS = "bench.jvmArgs.";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		double targetError = Double.parseDouble(System.getProperty("bench.targetError", "0.02"));
+		int maxForks = Integer.getInteger("bench.maxForks", 10);
+		String resultFile = System.getProperty("bench.result");
+
+		Map<String, String> jvmArgSets = new TreeMap<>();
+		for (String property : System.getProperties().stringPropertyNames())
+			if (property.startsWith(JVM_ARGS))
+				jvmArgSets.put(property.substring(JVM_ARGS.length()), System.getProperty(property));
+		if (jvmArgSets.isEmpty())
+			jvmArgSets.put("default", null); //Whatever the command line asks for
+
+		List<Calibration> calibrations = new ArrayList<>();
+		for (Map.Entry<String, String> jvmArgSet : jvmArgSets.entrySet()) {
+			ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine).forks(1);
+			if (jvmArgSet.getValue() != null)
+				builder.jvmArgs(jvmArgSet.getValue().trim().split("\\s+"));
+			Options singleFork = builder.build();
+
+			Map<String, Calibration> byKey = new LinkedHashMap<>();
+			record(byKey, jvmArgSet.getKey(), new Runner(singleFork).run());
+
+			for (int fork = 2; fork <= maxForks; fork++) {
+				boolean calibrated = true;
+				for (Calibration calibration : new ArrayList<>(byKey.values())) {
+					if (calibration.relativeError() <= targetError)
+						continue;
+					calibrated = false;
+					record(byKey, jvmArgSet.getKey(), new Runner(calibration.nextFork(singleFork)).run());
+				}
+				if (calibrated)
+					break;
+			}
+			calibrations.addAll(byKey.values());
+		}
+
+		System.out.println();
+		System.out.println(String.format("Calibrated to a relative error of %.1f%% (at most %d forks):", targetError * 100, maxForks));
+		for (Calibration calibration : calibrations)
+			System.out.println(String.format("%s %s %s%s: %.3f +- %.3f %s (%.1f%% after %d forks)%s",
+					calibration.jvmArgSet, calibration.benchmark, calibration.mode.shortLabel(), calibration.params,
+					calibration.scores.getMean(), calibration.error(), calibration.unit, calibration.relativeError() * 100,
+					calibration.forks, calibration.relativeError() <= targetError ? "" : " NOT CALIBRATED"));
+
+		if (resultFile != null) {
+			try (PrintWriter writer = new PrintWriter(resultFile, "UTF-8")) {
+				writer.println("\"JVM Args\",\"Benchmark\",\"Mode\",\"Params\",\"Forks\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Relative Error\",\"Unit\"");
+				for (Calibration calibration : calibrations)
+					writer.println(String.format("\"%s\",\"%s\",\"%s\",\"%s\",%d,%d,%f,%f,%f,\"%s\"",
+							calibration.jvmArgSet, calibration.benchmark, calibration.mode.shortLabel(), calibration.params.trim(),
+							calibration.forks, calibration.scores.getN(), calibration.scores.getMean(), calibration.error(),
+							calibration.relativeError(), calibration.unit));
+			}
+		}
+	}
+
+	private static void record(Map<String, Calibration> byKey, String jvmArgSet, Iterable<RunResult> runs) {
+		for (RunResult run : runs) {
+			BenchmarkParams params = run.getParams();
+			Calibration calibration = byKey.computeIfAbsent(Calibration.key(params), key -> new Calibration(jvmArgSet, params));
+			calibration.forks++;
+			for (BenchmarkResult fork : run.getBenchmarkResults()) {
+				calibration.unit = fork.getScoreUnit();
+				for (IterationResult iteration : fork.getIterationResults())
+					calibration.scores.addValue(iteration.getPrimaryResult().getScore());
+			}
+		}
+	}
+
+	private static final class Calibration {
+
+		final String jvmArgSet;
+		final String benchmark;
+		final Mode mode;
+		final Map<String, String> paramValues = new LinkedHashMap<>();
+		final String params;
+		final ListStatistics scores = new ListStatistics();
+		String unit = "";
+		int forks;
+
+		Calibration(String jvmArgSet, BenchmarkParams params) {
+			this.jvmArgSet = jvmArgSet;
+			this.benchmark = params.getBenchmark();
+			this.mode = params.getMode();
+
+			StringBuilder label = new StringBuilder();
+			for (String key : params.getParamsKeys()) {
+				paramValues.put(key, params.getParam(key));
+				label.append(' ').append(key).append('=').append(params.getParam(key));
+			}
+			this.params = label.toString();
+		}
+
+		static String key(BenchmarkParams params) {
+			StringBuilder key = new StringBuilder(params.getBenchmark()).append(' ').append(params.getMode());
+			for (String param : params.getParamsKeys())
+				key.append(' ').append(param).append('=').append(params.getParam(param));
+			return key.toString();
+		}
+
+		double error() {
+			return scores.getMeanErrorAt(CONFIDENCE);
+		}
+
+		double relativeError() { //NaN (too few samples) compares as not calibrated
+			double relative = error() / Math.abs(scores.getMean());
+			return Double.isNaN(relative) ? Double.POSITIVE_INFINITY : relative;
+		}
+
+		Options nextFork(Options singleFork) {
+			//Includes add up with the parent's, so everything but this benchmark is excluded instead
+			ChainedOptionsBuilder builder = new OptionsBuilder()
+					.parent(singleFork)
+					.exclude("^(?!" + Pattern.quote(benchmark) + "$)")
+					.mode(mode);
+			for (Map.Entry<String, String> param : paramValues.entrySet())
+				builder.param(param.getKey(), param.getValue());
+			return builder.build();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.austinv11.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.management.JMException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady state churn: get/put/remove calls interleaved in a fixed ratio against a map which is kept at a constant
+ * live size while its keys are constantly replaced. This is what builds up tombstones in open addressing maps, so
+ * the map is kept for the whole trial and every measurement iteration is one point of a throughput-over-time series.
+ * After every iteration the heap is collected and the live heap is printed next to the throughput, so memory creep
+ * (tombstones, tables which never shrink) shows up in the series. The collection happens outside the measurement, but
+ * does mean every iteration starts with an empty young generation.
+ *
+ * Like {@link InstrumentationTests}, every workload runs against a map locked around each call
+ * ({@code instrumented=false}) and against an {@link InstrumentedMapAdapter} ({@code instrumented=true}), whose
+ * metrics are printed when the trial ends.
+ *
+ * The annotations below ask for a long series, but the gradle jmh task overrides them. To keep them run the
+ * benchmark jar directly, e.g. {@code java -jar build/libs/Long-Map-Benchmarks-1.0.0-jmh.jar ChurnTests}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 120, time = 1)
+@Fork(1)
+public class ChurnTests {
+
+	private static final int BATCH = 1_024; //Operations per benchmark invocation
+	private static final int SCHEDULE = 4_096; //Length of the pre-drawn operation schedule, must be a power of 2
+
+	private static final byte GET = 0;
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	@State(Scope.Thread)
+	public static class ChurnContext {
+
+		//Long2ObjectArrayMap is left out, a linear scan over the live set would dominate everything else
+		@Param({"HashMap", "ConcurrentHashMap", "Long2ObjectOpenHashMap", "LongObjectHashMap", "HashLongObjMap", "TLongObjectHashMap", "hppcrt.LongObjectHashMap", "Long2ObjectHashMap"})
+		public String mapType;
+
+		@Param({"80/15/5", "50/25/25", "10/45/45"}) //get/put/remove percentages
+		public String mix;
+
+		@Param({"1000", "100000"})
+		public int liveSetSize;
+
+		@Param({"0", "1024"}) //Batches between compact() calls on the map, 0 never compacts
+		public int compactEvery;
+
+		@Param({"false", "true"})
+		public boolean instrumented;
+
+		public MapAdapter map; //Each fork only ever loads one adapter, so the calls stay monomorphic
+		public MapMetrics metrics;
+		public Object[] values;
+
+		private byte[] schedule;
+		private int scheduleIndex;
+		private long[] liveKeys;
+		private int liveCount, minLiveCount;
+		private long sequence;
+		private long random;
+		private int batches;
+
+		//Per iteration statistics
+		private int iteration;
+		private long iterationStart, iterationOps;
+
+		@Setup(Level.Trial)
+		public void init() throws JMException {
+			MapTests.Context data = new MapTests.Context();
+			data.init();
+			values = data.testValues;
+			random = data.random.nextLong() | 1;
+
+			String[] ratios = mix.split("/");
+			if (ratios.length != 3)
+				throw new IllegalArgumentException("Expected a get/put/remove mix, got " + mix);
+			int gets = Integer.parseInt(ratios[0]), puts = Integer.parseInt(ratios[1]), removes = Integer.parseInt(ratios[2]);
+			if (gets + puts + removes != 100)
+				throw new IllegalArgumentException("Mix " + mix + " does not add up to 100");
+
+			schedule = new byte[SCHEDULE];
+			for (int i = 0; i < SCHEDULE; i++) {
+				int roll = data.random.nextInt(100);
+				schedule[i] = roll < gets ? GET : roll < gets + puts ? PUT : REMOVE;
+			}
+
+			minLiveCount = liveSetSize - Math.max(1, liveSetSize / 100);
+			MapAdapter raw = MapAdapters.create(mapType);
+			liveKeys = new long[liveSetSize];
+			for (int i = 0; i < liveSetSize; i++) {
+				long key = freshKey();
+				liveKeys[liveCount++] = key;
+				raw.put(key, values[i % values.length]);
+			}
+
+			if (instrumented) {
+				metrics = new MapMetrics(raw);
+				metrics.register(mapType);
+				map = new InstrumentedMapAdapter(raw, metrics);
+			} else {
+				map = new SynchronizedMapAdapter(raw);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void clean() throws JMException {
+			if (metrics != null) {
+				System.out.println(mapType + " " + mix + " metrics: " + metrics);
+				metrics.unregister();
+				metrics = null;
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void startIteration() {
+			iterationOps = 0;
+			iterationStart = System.nanoTime();
+		}
+
+		@TearDown(Level.Iteration)
+		public void endIteration() {
+			long elapsed = System.nanoTime() - iterationStart;
+			System.out.println(String.format("churn %s %s live=%d iteration=%d: %.1f ops/ms, live heap=%.1fMB",
+					mapType, mix, liveCount, ++iteration, iterationOps / (elapsed / 1_000_000.0),
+					liveHeapBytes() / (1024.0 * 1024.0)));
+		}
+
+		private static long liveHeapBytes() { //What the heap pools held right after a full collection, garbage excluded
+			System.gc();
+			long used = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+				if (usage != null)
+					used += usage.getUsed();
+			}
+			return used;
+		}
+
+		public void runBatch(Blackhole blackhole) {
+			MapAdapter map = this.map;
+			for (int i = 0; i < BATCH; i++) {
+				switch (schedule[scheduleIndex++ & (SCHEDULE - 1)]) {
+					case GET:
+						blackhole.consume(liveCount == 0 ? map.get(freshKey()) : map.get(liveKeys[nextInt(liveCount)]));
+						break;
+					case PUT:
+						if (liveCount < liveSetSize) { //Below the target live size, so insert a brand new key
+							long key = freshKey();
+							liveKeys[liveCount++] = key;
+							map.put(key, values[(int) (key & 0x7FFFFFFF) % values.length]);
+						} else { //At the target, so update an existing key
+							long key = liveKeys[nextInt(liveCount)];
+							map.put(key, values[(int) (key & 0x7FFFFFFF) % values.length]);
+						}
+						break;
+					case REMOVE:
+						if (liveCount > minLiveCount) {
+							int index = nextInt(liveCount);
+							map.remove(liveKeys[index]);
+							liveKeys[index] = liveKeys[--liveCount];
+						} else { //Too far below the target, miss instead so the live set doesn't random walk away from it
+							map.remove(freshKey());
+						}
+						break;
+				}
+			}
+			iterationOps += BATCH;
+
+			if (compactEvery > 0 && ++batches % compactEvery == 0)
+				map.compact();
+		}
+
+		private long freshKey() { //A bijective mix of a counter, so keys never repeat but are spread over the whole long range
+			long key = ++sequence;
+			key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+			key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+			return key ^ (key >>> 31);
+		}
+
+		private int nextInt(int bound) { //xorshift, java.util.Random would cost more than some of the map calls
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			return (int) ((random >>> 33) % bound);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void steadyStateChurn(ChurnContext context, Blackhole blackhole) { //Both decorators lock the map themselves
+		context.runBatch(blackhole);
+	}
+}
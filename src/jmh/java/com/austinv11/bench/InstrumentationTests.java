@@ -0,0 +1,103 @@
+package com.austinv11.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.management.JMException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures what {@link InstrumentedMapAdapter} costs: every workload runs once against a map which is only locked
+ * ({@code instrumented=false}) and once against the instrumented decorator ({@code instrumented=true}).
+ *
+ * The map is shared by every benchmark thread, so run with e.g. {@code -t 4} to get lock waits worth measuring. While
+ * a trial runs its metrics are visible over JMX, and they are printed when it ends.
+ */
+public class InstrumentationTests {
+
+	private static final int BATCH = 1_000;
+
+	@State(Scope.Benchmark)
+	public static class InstrumentationContext {
+
+		//Long2ObjectArrayMap is left out, its linear scan would drown out the decorator
+		@Param({"HashMap", "ConcurrentHashMap", "Long2ObjectOpenHashMap", "LongObjectHashMap", "HashLongObjMap", "TLongObjectHashMap", "hppcrt.LongObjectHashMap", "Long2ObjectHashMap"})
+		public String mapType;
+
+		@Param({"false", "true"})
+		public boolean instrumented;
+
+		public MapAdapter map;
+		public MapMetrics metrics;
+		public long[] testKeys;
+		public Object[] testValues;
+		public Object[] testValues2;
+
+		@Setup(Level.Trial)
+		public void init() throws JMException {
+			MapTests.Context data = new MapTests.Context();
+			data.init();
+			testKeys = data.testKeys;
+			testValues = data.testValues;
+			testValues2 = data.testValues2;
+
+			MapAdapter raw = MapAdapters.create(mapType);
+			for (int i = 0; i < testKeys.length; i++)
+				raw.put(testKeys[i], testValues[i]);
+
+			if (instrumented) {
+				metrics = new MapMetrics(raw);
+				metrics.register(mapType);
+				map = new InstrumentedMapAdapter(raw, metrics);
+			} else {
+				map = new SynchronizedMapAdapter(raw);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void clean() throws JMException {
+			if (metrics != null) {
+				System.out.println(mapType + " metrics: " + metrics);
+				metrics.unregister();
+				metrics = null;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void get(InstrumentationContext context, Blackhole blackhole) { //Same 50% successful and 50% unsuccessful mix as MapTests
+		MapAdapter map = context.map;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for (int i = 0; i < BATCH / 2; i++) {
+			blackhole.consume(map.get(context.testKeys[random.nextInt(context.testKeys.length)])); //Successful call
+			blackhole.consume(map.get(Integer.MIN_VALUE + random.nextInt(Integer.MAX_VALUE) - 1)); //Unsuccessful call
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void putUpdate(InstrumentationContext context) {
+		MapAdapter map = context.map;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for (int i = 0; i < BATCH; i++) {
+			int index = random.nextInt(context.testKeys.length);
+			map.put(context.testKeys[index], (i & 1) == 0 ? context.testValues[index] : context.testValues2[index]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void putRemove(InstrumentationContext context) { //Removes a key and puts it straight back, so the contents stay stable across threads
+		MapAdapter map = context.map;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for (int i = 0; i < BATCH / 2; i++) {
+			int index = random.nextInt(context.testKeys.length);
+			map.remove(context.testKeys[index]);
+			map.put(context.testKeys[index], context.testValues[index]);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package com.austinv11.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link SynchronizedMapAdapter} which also records {@link MapMetrics}.
+ *
+ * Call counts, hits and resizes are recorded on every call (resizes only for maps which expose their
+ * {@link MapAdapter#capacity()}, on puts, removes and compactions since maps shrink too). Lock waits and probe lengths
+ * need a {@link System#nanoTime()} pair or an extra walk of the table, so only one in {@link #SAMPLE_RATE} calls records
+ * them. The probe length of a put or remove is the walk a lookup of its key makes before the write.
+ */
+public class InstrumentedMapAdapter implements MapAdapter {
+
+	public static final int SAMPLE_RATE = 64; //Must be a power of 2
+
+	private final MapAdapter map;
+	private final MapMetrics metrics;
+	private final boolean locked;
+	private final boolean probed;
+
+	public InstrumentedMapAdapter(MapAdapter map, MapMetrics metrics) {
+		this.map = map;
+		this.metrics = metrics;
+		this.locked = !map.isThreadSafe();
+		this.probed = map.probeLength(0) >= 0;
+	}
+
+	public MapMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public Object get(long key) {
+		Object value;
+		if (!sample()) {
+			if (locked) {
+				synchronized (map) {
+					value = map.get(key);
+				}
+			} else {
+				value = map.get(key);
+			}
+		} else if (locked) {
+			long start = System.nanoTime();
+			synchronized (map) {
+				metrics.lockWaitNanos.record(System.nanoTime() - start);
+				if (probed)
+					metrics.probeLengths.record(map.probeLength(key));
+				value = map.get(key);
+			}
+		} else {
+			if (probed)
+				metrics.probeLengths.record(map.probeLength(key));
+			value = map.get(key);
+		}
+
+		metrics.gets.increment();
+		if (value != null)
+			metrics.hits.increment();
+		return value;
+	}
+
+	@Override
+	public void put(long key, Object value) {
+		int before, after;
+		if (!locked) {
+			if (probed && sample())
+				metrics.probeLengths.record(map.probeLength(key));
+			before = map.capacity();
+			map.put(key, value);
+			after = map.capacity();
+		} else if (!sample()) {
+			synchronized (map) {
+				before = map.capacity();
+				map.put(key, value);
+				after = map.capacity();
+			}
+		} else {
+			long start = System.nanoTime();
+			synchronized (map) {
+				metrics.lockWaitNanos.record(System.nanoTime() - start);
+				if (probed) //The walk the put makes to find the key or its free slot
+					metrics.probeLengths.record(map.probeLength(key));
+				before = map.capacity();
+				map.put(key, value);
+				after = map.capacity();
+			}
+		}
+
+		metrics.puts.increment();
+		recordResize(before, after);
+	}
+
+	@Override
+	public void remove(long key) {
+		int before, after;
+		if (!locked) {
+			if (probed && sample())
+				metrics.probeLengths.record(map.probeLength(key));
+			before = map.capacity();
+			map.remove(key);
+			after = map.capacity();
+		} else if (!sample()) {
+			synchronized (map) {
+				before = map.capacity();
+				map.remove(key);
+				after = map.capacity();
+			}
+		} else {
+			long start = System.nanoTime();
+			synchronized (map) {
+				metrics.lockWaitNanos.record(System.nanoTime() - start);
+				if (probed)
+					metrics.probeLengths.record(map.probeLength(key));
+				before = map.capacity();
+				map.remove(key);
+				after = map.capacity();
+			}
+		}
+
+		metrics.removes.increment();
+		recordResize(before, after); //fastutil shrinks once the map gets sparse, and Trove compacts itself after enough removes
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public void compact() {
+		synchronized (map) {
+			int before = map.capacity();
+			map.compact();
+			recordResize(before, map.capacity());
+		}
+	}
+
+	@Override
+	public int capacity() {
+		return map.capacity();
+	}
+
+	@Override
+	public int probeLength(long key) {
+		return map.probeLength(key);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	private void recordResize(int before, int after) {
+		if (before >= 0 && before != after) //Koloboke reports no capacity while it is empty
+			metrics.resizes.increment();
+	}
+
+	private static boolean sample() { //Thread local, so sampling doesn't add a shared write of its own
+		return (ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0;
+	}
+}
@@ -0,0 +1,68 @@
+package com.austinv11.bench;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram with power of 2 buckets, cheap enough to record into from hot paths on many threads at once.
+ *
+ * Bucket 0 counts zeros and bucket i counts values in [2^(i-1), 2^i), so percentiles are reported as the upper bound
+ * of the bucket they fall in.
+ */
+public class Log2Histogram {
+
+	private final LongAdder[] buckets = new LongAdder[65];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Log2Histogram() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long count = this.count.sum();
+		return count == 0 ? 0 : sum.sum() / (double) count;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getPercentile(double percentile) {
+		long total = count.sum();
+		if (total == 0)
+			return 0;
+
+		long target = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i].sum();
+			if (seen >= target) //Capped at the max, which the top bucket's upper bound can overshoot
+				return i == 0 ? 0 : Math.min(i == 64 ? Long.MAX_VALUE : (1L << i) - 1, max.get());
+		}
+		return max.get();
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
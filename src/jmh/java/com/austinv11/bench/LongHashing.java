@@ -0,0 +1,47 @@
+package com.austinv11.bench;
+
+/**
+ * Hashing and linear probing helpers shared by the open addressing tables written for these benchmarks. Key 0 marks a
+ * free slot in every one of them.
+ */
+final class LongHashing {
+
+	private LongHashing() {}
+
+	/**
+	 * @return The smallest power of 2 table (at least 2 slots) which holds the expected size below the load factor.
+	 */
+	static int tableSize(int expectedSize, float loadFactor) {
+		int capacity = Integer.highestOneBit(Math.max(2, (int) Math.ceil(expectedSize / loadFactor)) - 1) << 1;
+		return Math.max(capacity, 2);
+	}
+
+	static int mix(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Empties the slot by backward shift deletion, so removals never leave tombstones behind.
+	 */
+	static void shiftKeys(long[] keys, Object[] values, int mask, int slot) {
+		int last;
+		while (true) {
+			slot = ((last = slot) + 1) & mask;
+			long current;
+			while (true) {
+				if ((current = keys[slot]) == 0) {
+					keys[last] = 0;
+					values[last] = null;
+					return;
+				}
+				int home = mix(current) & mask;
+				if (last <= slot ? last >= home || home > slot : last >= home && home > slot)
+					break;
+				slot = (slot + 1) & mask;
+			}
+			keys[last] = current;
+			values[last] = values[slot];
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.austinv11.bench;
+
+/**
+ * Minimal long -> Object view over the benchmarked maps so that generic workloads and decorators can drive any of them.
+ * Implementations come from {@link MapAdapters}.
+ */
+public interface MapAdapter {
+
+	Object get(long key);
+
+	void put(long key, Object value);
+
+	void remove(long key);
+
+	int size();
+
+	default void compact() {}
+
+	default int capacity() { //Slots in the backing table, -1 if the map doesn't expose it
+		return -1;
+	}
+
+	default int probeLength(long key) { //Slots a lookup of the key inspects, -1 if the map doesn't expose it
+		return -1;
+	}
+
+	default boolean isThreadSafe() {
+		return false;
+	}
+}
@@ -0,0 +1,184 @@
+package com.austinv11.bench;
+
+import com.koloboke.collect.map.hash.HashLongObjMap;
+import com.koloboke.collect.map.hash.HashLongObjMaps;
+import gnu.trove.impl.HashFunctions;
+import gnu.trove.impl.hash.TPrimitiveHash;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MapAdapter}s for every benchmarked map type, looked up by the map's simple class name.
+ */
+public final class MapAdapters {
+
+	public static final String[] MAP_TYPES = {"HashMap", "ConcurrentHashMap", "Long2ObjectArrayMap", "Long2ObjectOpenHashMap", "LongObjectHashMap", "HashLongObjMap", "TLongObjectHashMap", "hppcrt.LongObjectHashMap", "Long2ObjectHashMap"};
+
+	private MapAdapters() {}
+
+	public static MapAdapter create(String mapType) {
+		switch (mapType) {
+			case "HashMap": {
+				final HashMap<Long, Object> map = new HashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+				};
+			}
+			case "ConcurrentHashMap": {
+				final ConcurrentHashMap<Long, Object> map = new ConcurrentHashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public boolean isThreadSafe() { return true; }
+				};
+			}
+			case "Long2ObjectArrayMap": {
+				final Long2ObjectArrayMap<Object> map = new Long2ObjectArrayMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+				};
+			}
+			case "Long2ObjectOpenHashMap": {
+				final InspectableLong2ObjectOpenHashMap map = new InspectableLong2ObjectOpenHashMap();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public void compact() { map.trim(); }
+					public int capacity() { return map.capacity(); }
+					public int probeLength(long key) { return map.probeLength(key); }
+				};
+			}
+			case "LongObjectHashMap": {
+				final LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public void compact() { map.compact(); }
+				};
+			}
+			case "HashLongObjMap": {
+				final HashLongObjMap<Object> map = HashLongObjMaps.newMutableMap();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public void compact() { map.shrink(); }
+					public int capacity() { return map.isEmpty() ? -1 : (int) Math.round(map.size() / map.currentLoad()); }
+				};
+			}
+			case "TLongObjectHashMap": {
+				final TLongObjectHashMap<Object> map = new TLongObjectHashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public void compact() { map.compact(); }
+					public int capacity() { return map.capacity(); }
+					public int probeLength(long key) { return troveProbeLength(map, key); }
+				};
+			}
+			case "hppcrt.LongObjectHashMap": {
+				final com.carrotsearch.hppcrt.maps.LongObjectHashMap<Object> map = new com.carrotsearch.hppcrt.maps.LongObjectHashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+				};
+			}
+			case "Long2ObjectHashMap": {
+				final Long2ObjectHashMap<Object> map = new Long2ObjectHashMap<>();
+				return new MapAdapter() {
+					public Object get(long key) { return map.get(key); }
+					public void put(long key, Object value) { map.put(key, value); }
+					public void remove(long key) { map.remove(key); }
+					public int size() { return map.size(); }
+					public void compact() { map.compact(); }
+					public int capacity() { return map.capacity(); }
+				};
+			}
+			default:
+				throw new IllegalArgumentException("Unknown map type " + mapType);
+		}
+	}
+
+	public static MapAdapter create(final ShardedLong2ObjectMap<Object> map) { //Needs a shard count, so it isn't in MAP_TYPES
+		return new MapAdapter() {
+			public Object get(long key) { return map.get(key); }
+			public void put(long key, Object value) { map.put(key, value); }
+			public void remove(long key) { map.remove(key); }
+			public int size() { return map.size(); }
+			public boolean isThreadSafe() { return true; }
+		};
+	}
+
+	private static int troveProbeLength(TLongObjectHashMap<?> map, long key) { //Mirrors TLongHash.index(), which double hashes over the public _set/_states arrays
+		byte[] states = map._states;
+		long[] set = map._set;
+		int length = states.length;
+		int hash = HashFunctions.hash(key) & 0x7fffffff;
+		int index = hash % length;
+		int probes = 1;
+		byte state = states[index];
+		if (state == TPrimitiveHash.FREE || (state == TPrimitiveHash.FULL && set[index] == key))
+			return probes;
+
+		int probe = 1 + (hash % (length - 2));
+		int loopIndex = index;
+		do {
+			index -= probe;
+			if (index < 0)
+				index += length;
+			probes++;
+			state = states[index];
+			if (state == TPrimitiveHash.FREE || (state != TPrimitiveHash.REMOVED && set[index] == key))
+				break;
+		} while (index != loopIndex);
+		return probes;
+	}
+
+	//Exposes the table so that the probe sequence can be measured without touching the map's own lookup path
+	private static final class InspectableLong2ObjectOpenHashMap extends Long2ObjectOpenHashMap<Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		int capacity() {
+			return n;
+		}
+
+		int probeLength(long k) { //Mirrors get(), which probes linearly from the mixed hash until it finds the key or a 0 slot
+			if (k == 0)
+				return 1; //The 0 key lives in its own slot
+			long[] key = this.key;
+			int pos = (int) HashCommon.mix(k) & mask;
+			int probes = 1;
+			long current;
+			while ((current = key[pos]) != 0 && current != k) {
+				pos = (pos + 1) & mask;
+				probes++;
+			}
+			return probes;
+		}
+	}
+}
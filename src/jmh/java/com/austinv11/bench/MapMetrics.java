@@ -0,0 +1,141 @@
+package com.austinv11.bench;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters recorded by an {@link InstrumentedMapAdapter}. Everything is striped ({@link LongAdder} based) so that
+ * recording never contends, and the gauges read the map without its lock so they are only approximate. Statistics
+ * which weren't recorded at all (no resizes or probe lengths for maps which don't expose their table, no lock waits
+ * for thread safe maps) are reported as -1, or NaN for means.
+ */
+public class MapMetrics implements MapMetricsMBean {
+
+	final LongAdder gets = new LongAdder();
+	final LongAdder hits = new LongAdder();
+	final LongAdder puts = new LongAdder();
+	final LongAdder removes = new LongAdder();
+	final LongAdder resizes = new LongAdder();
+	final Log2Histogram probeLengths = new Log2Histogram();
+	final Log2Histogram lockWaitNanos = new Log2Histogram();
+
+	private final MapAdapter map;
+	private ObjectName name;
+
+	public MapMetrics(MapAdapter map) {
+		this.map = map;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server as {@code com.austinv11.bench:type=MapMetrics,name=<name>}.
+	 */
+	public void register(String mapName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.austinv11.bench:type=MapMetrics,name=" + ObjectName.quote(mapName));
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+		server.registerMBean(this, name);
+		this.name = name;
+	}
+
+	public void unregister() throws JMException {
+		if (name != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+		}
+	}
+
+	@Override
+	public long getGets() {
+		return gets.sum();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getPuts() {
+		return puts.sum();
+	}
+
+	@Override
+	public long getRemoves() {
+		return removes.sum();
+	}
+
+	@Override
+	public long getResizes() { //-1 for maps which don't expose their capacity, their resizes can't be seen
+		return map.capacity() < 0 ? -1 : resizes.sum();
+	}
+
+	@Override
+	public int getSize() {
+		return map.size();
+	}
+
+	@Override
+	public int getCapacity() {
+		return map.capacity();
+	}
+
+	@Override
+	public double getLoadFactor() {
+		int capacity = map.capacity();
+		return capacity <= 0 ? Double.NaN : map.size() / (double) capacity;
+	}
+
+	@Override
+	public double getMeanProbeLength() {
+		return probeLengths.getCount() == 0 ? Double.NaN : probeLengths.getMean();
+	}
+
+	@Override
+	public long getP99ProbeLength() {
+		return probeLengths.getCount() == 0 ? -1 : probeLengths.getPercentile(99);
+	}
+
+	@Override
+	public long getMaxProbeLength() {
+		return probeLengths.getCount() == 0 ? -1 : probeLengths.getMax();
+	}
+
+	@Override
+	public double getMeanLockWaitNanos() {
+		return lockWaitNanos.getCount() == 0 ? Double.NaN : lockWaitNanos.getMean();
+	}
+
+	@Override
+	public long getP99LockWaitNanos() {
+		return lockWaitNanos.getCount() == 0 ? -1 : lockWaitNanos.getPercentile(99);
+	}
+
+	@Override
+	public long getMaxLockWaitNanos() {
+		return lockWaitNanos.getCount() == 0 ? -1 : lockWaitNanos.getMax();
+	}
+
+	@Override
+	public void reset() {
+		gets.reset();
+		hits.reset();
+		puts.reset();
+		removes.reset();
+		resizes.reset();
+		probeLengths.reset();
+		lockWaitNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("gets=%d (hits=%d), puts=%d, removes=%d, resizes=%d, size=%d, capacity=%d, load=%.2f, " +
+						"probe length mean=%.2f p99=%d max=%d, lock wait ns mean=%.1f p99=%d max=%d",
+				getGets(), getHits(), getPuts(), getRemoves(), getResizes(), getSize(), getCapacity(), getLoadFactor(),
+				getMeanProbeLength(), getP99ProbeLength(), getMaxProbeLength(),
+				getMeanLockWaitNanos(), getP99LockWaitNanos(), getMaxLockWaitNanos());
+	}
+}
@@ -0,0 +1,38 @@
+package com.austinv11.bench;
+
+/**
+ * JMX view of a {@link MapMetrics}. Probe lengths and lock waits are sampled, so their counts are a fraction of the
+ * call counts.
+ */
+public interface MapMetricsMBean {
+
+	long getGets();
+
+	long getHits();
+
+	long getPuts();
+
+	long getRemoves();
+
+	long getResizes();
+
+	int getSize();
+
+	int getCapacity();
+
+	double getLoadFactor();
+
+	double getMeanProbeLength();
+
+	long getP99ProbeLength();
+
+	long getMaxProbeLength();
+
+	double getMeanLockWaitNanos();
+
+	long getP99LockWaitNanos();
+
+	long getMaxLockWaitNanos();
+
+	void reset();
+}
@@ -0,0 +1,428 @@
+package com.austinv11.bench;
+
+import com.austinv11.bench.MapTests.Context.ArbitraryPOJO;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Compact columnar snapshot of a long -> Object map.
+ *
+ * Keys are sorted and stored as varint deltas, and values are split into one column per storage kind so that each
+ * column stays dense (varints for ints/longs, bit-packed booleans, raw floats/doubles, length-prefixed blobs).
+ * All columns live in reusable direct buffers which are written to NIO channels as-is. Restores stream the columns back
+ * in: each one is read with positional reads in windows of about {@link #WINDOW} bytes as it is decoded, so only the
+ * windows are held in memory rather than the whole snapshot.
+ */
+public class MapSnapshot {
+
+	private static final int MAGIC = 0x4C4D5331; //"LMS1"
+	private static final int WINDOW = 1 << 13; //Bytes of each column read at a time while restoring
+
+	//Value tags, ArbitraryPOJO is followed by the tags of its two fields
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_INT = 1;
+	private static final byte TAG_LONG = 2;
+	private static final byte TAG_BOOLEAN = 3;
+	private static final byte TAG_FLOAT = 4;
+	private static final byte TAG_DOUBLE = 5;
+	private static final byte TAG_BYTES = 6;
+	private static final byte TAG_STRING = 7;
+	private static final byte TAG_POJO = 8;
+
+	private final Column keys = new Column(); //First key as a zigzag varint, then unsigned varint deltas
+	private final Column tags = new Column(); //One tag byte per (nested) value
+	private final Column varints = new Column(); //Zigzag varints for Integer and Long values
+	private final Column bits = new Column(); //Bit-packed Boolean values
+	private final Column fixed = new Column(); //Raw Float and Double values
+	private final Column lengths = new Column(); //Varint lengths for byte[] and String values
+	private final Column blobs = new Column(); //Raw byte[] contents and String chars
+	private final Column[] columns = {keys, tags, varints, bits, fixed, lengths, blobs};
+
+	private final ByteBuffer header = ByteBuffer.allocateDirect(8 + 4 * columns.length).order(ByteOrder.LITTLE_ENDIAN);
+
+	private long[] pendingKeys = new long[16];
+	private Object[] pendingValues = new Object[16];
+	private int size;
+
+	public interface EntryConsumer {
+		void accept(long key, Object value);
+	}
+
+	/**
+	 * Queues an entry for the next {@link #write(WritableByteChannel)}.
+	 */
+	public void add(long key, Object value) {
+		if (size == pendingKeys.length) {
+			pendingKeys = Arrays.copyOf(pendingKeys, size * 2);
+			pendingValues = Arrays.copyOf(pendingValues, size * 2);
+		}
+		pendingKeys[size] = key;
+		pendingValues[size] = value;
+		size++;
+	}
+
+	/**
+	 * Encodes all queued entries to the channel and clears the queue.
+	 *
+	 * @return The number of bytes written.
+	 */
+	public long write(WritableByteChannel channel) throws IOException {
+		for (Column column : columns)
+			column.clear();
+
+		if (!isSorted(pendingKeys, size)) //Maps that already iterate in key order skip the sort entirely
+			sort(pendingKeys, pendingValues, 0, size - 1);
+
+		long previous = 0;
+		for (int i = 0; i < size; i++) {
+			long key = pendingKeys[i];
+			if (i == 0)
+				keys.putVarLong(zigZag(key));
+			else
+				keys.putVarLong(key - previous); //Sorted, so the delta is non-negative when read as unsigned
+			previous = key;
+
+			writeValue(pendingValues[i]);
+			pendingValues[i] = null;
+		}
+		bits.flushBits();
+
+		header.clear();
+		header.putInt(MAGIC);
+		header.putInt(size);
+		for (Column column : columns)
+			header.putInt(column.buffer.position());
+		header.flip();
+
+		long written = writeFully(channel, header);
+		for (Column column : columns) {
+			column.buffer.flip();
+			written += writeFully(channel, column.buffer);
+		}
+
+		size = 0;
+		return written;
+	}
+
+	/**
+	 * Reads the header of the snapshot at the channel's position, so that the snapshot can be drained into a pre-sized
+	 * map, and moves the channel past the snapshot. The columns themselves are only read while draining, and the channel
+	 * must stay open until then.
+	 *
+	 * @return The number of entries in the snapshot.
+	 */
+	public int read(FileChannel channel) throws IOException {
+		header.clear();
+		readFully(channel, header);
+		header.flip();
+		if (header.getInt() != MAGIC)
+			throw new StreamCorruptedException("Not a map snapshot");
+		int entries = header.getInt();
+
+		long position = channel.position();
+		for (Column column : columns) {
+			int length = header.getInt();
+			column.stream(channel, position, length);
+			position += length;
+		}
+		channel.position(position);
+
+		size = entries;
+		return entries;
+	}
+
+	/**
+	 * Decodes the entries of the snapshot opened by {@link #read(FileChannel)} in ascending key order.
+	 */
+	public void drain(EntryConsumer consumer) throws IOException {
+		long key = 0;
+		for (int i = 0; i < size; i++) {
+			keys.require(10);
+			key = i == 0 ? unZigZag(keys.getVarLong()) : key + keys.getVarLong();
+			consumer.accept(key, readValue());
+		}
+		size = 0;
+	}
+
+	/**
+	 * Decodes the entries of the snapshot opened by {@link #read(FileChannel)} straight into parallel arrays.
+	 */
+	public void drain(long[] keyArray, Object[] valueArray) throws IOException {
+		long key = 0;
+		for (int i = 0; i < size; i++) {
+			keys.require(10);
+			key = i == 0 ? unZigZag(keys.getVarLong()) : key + keys.getVarLong();
+			keyArray[i] = key;
+			valueArray[i] = readValue();
+		}
+		size = 0;
+	}
+
+	private void writeValue(Object value) {
+		if (value == null) {
+			tags.put(TAG_NULL);
+		} else if (value instanceof Integer) {
+			tags.put(TAG_INT);
+			varints.putVarLong(zigZag((Integer) value));
+		} else if (value instanceof Long) {
+			tags.put(TAG_LONG);
+			varints.putVarLong(zigZag((Long) value));
+		} else if (value instanceof Boolean) {
+			tags.put(TAG_BOOLEAN);
+			bits.putBit((Boolean) value);
+		} else if (value instanceof Float) {
+			tags.put(TAG_FLOAT);
+			fixed.ensure(4);
+			fixed.buffer.putFloat((Float) value);
+		} else if (value instanceof Double) {
+			tags.put(TAG_DOUBLE);
+			fixed.ensure(8);
+			fixed.buffer.putDouble((Double) value);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			tags.put(TAG_BYTES);
+			lengths.putVarLong(bytes.length);
+			blobs.ensure(bytes.length);
+			blobs.buffer.put(bytes);
+		} else if (value instanceof String) {
+			String string = (String) value;
+			int length = string.length();
+			tags.put(TAG_STRING);
+			lengths.putVarLong(length);
+			blobs.ensure(length * 2);
+			for (int i = 0; i < length; i++) //Raw UTF-16 so that unpaired surrogates survive the round trip
+				blobs.buffer.putChar(string.charAt(i));
+		} else if (value instanceof ArbitraryPOJO) {
+			ArbitraryPOJO pojo = (ArbitraryPOJO) value;
+			tags.put(TAG_POJO);
+			writeValue(pojo.obj1);
+			writeValue(pojo.obj2);
+		} else {
+			throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+		}
+	}
+
+	private Object readValue() throws IOException {
+		tags.require(1);
+		byte tag = tags.buffer.get();
+		switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_INT:
+				varints.require(10);
+				return (int) unZigZag(varints.getVarLong());
+			case TAG_LONG:
+				varints.require(10);
+				return unZigZag(varints.getVarLong());
+			case TAG_BOOLEAN:
+				return bits.getBit();
+			case TAG_FLOAT:
+				fixed.require(4);
+				return fixed.buffer.getFloat();
+			case TAG_DOUBLE:
+				fixed.require(8);
+				return fixed.buffer.getDouble();
+			case TAG_BYTES:
+				lengths.require(10);
+				byte[] bytes = new byte[(int) lengths.getVarLong()];
+				blobs.require(bytes.length);
+				blobs.buffer.get(bytes);
+				return bytes;
+			case TAG_STRING:
+				lengths.require(10);
+				char[] chars = new char[(int) lengths.getVarLong()];
+				blobs.require(chars.length * 2);
+				for (int i = 0; i < chars.length; i++)
+					chars[i] = blobs.buffer.getChar();
+				return new String(chars);
+			case TAG_POJO:
+				Object obj1 = readValue();
+				Object obj2 = readValue();
+				return new ArbitraryPOJO(obj1, obj2);
+			default:
+				throw new IllegalStateException("Unknown value tag " + tag);
+		}
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		long written = 0;
+		while (buffer.hasRemaining())
+			written += channel.write(buffer);
+		return written;
+	}
+
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				throw new EOFException("Truncated map snapshot");
+	}
+
+	private static void sort(long[] keys, Object[] values, int low, int high) { //Quicksort on the parallel arrays
+		while (low < high) {
+			long pivot = keys[(low + high) >>> 1];
+			int i = low, j = high;
+			while (i <= j) {
+				while (keys[i] < pivot)
+					i++;
+				while (keys[j] > pivot)
+					j--;
+				if (i <= j) {
+					long key = keys[i];
+					keys[i] = keys[j];
+					keys[j] = key;
+					Object value = values[i];
+					values[i] = values[j];
+					values[j] = value;
+					i++;
+					j--;
+				}
+			}
+
+			//Recurse into the smaller half to bound the stack depth
+			if (j - low < high - i) {
+				sort(keys, values, low, j);
+				low = i;
+			} else {
+				sort(keys, values, i, high);
+				high = j;
+			}
+		}
+	}
+
+	private static boolean isSorted(long[] keys, int size) {
+		for (int i = 0; i < size - 1; i++)
+			if (keys[i] > keys[i + 1])
+				return false;
+		return true;
+	}
+
+	private static final class Column {
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024).order(ByteOrder.LITTLE_ENDIAN);
+		private int bitBuffer, bitCount;
+
+		//Only set while a snapshot is streamed in, the part of the column which is still in the file
+		private FileChannel source;
+		private long sourcePosition, sourceEnd;
+
+		void clear() {
+			buffer.clear();
+			bitBuffer = 0;
+			bitCount = 0;
+			source = null;
+		}
+
+		void stream(FileChannel channel, long position, int length) {
+			if (buffer.capacity() > WINDOW) //Grown while writing, a window is all a restore needs
+				buffer = ByteBuffer.allocateDirect(WINDOW).order(ByteOrder.LITTLE_ENDIAN);
+			clear();
+			buffer.limit(0);
+			source = channel;
+			sourcePosition = position;
+			sourceEnd = position + length;
+		}
+
+		/**
+		 * Makes sure the given number of bytes (or whatever is left of the column) can be read from the buffer, reading
+		 * the next window of the column in if they can't.
+		 */
+		void require(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes || source == null || sourcePosition == sourceEnd)
+				return;
+
+			buffer.compact();
+			ensure(bytes - buffer.position()); //A single value larger than the window grows it
+			int wanted = (int) Math.min(Math.max(WINDOW, bytes) - buffer.position(), sourceEnd - sourcePosition);
+			buffer.limit(buffer.position() + Math.min(wanted, buffer.remaining()));
+			while (buffer.hasRemaining()) {
+				int read = source.read(buffer, sourcePosition);
+				if (read < 0)
+					throw new EOFException("Truncated map snapshot");
+				sourcePosition += read;
+			}
+			buffer.flip();
+		}
+
+		void ensure(int bytes) {
+			if (buffer.remaining() >= bytes)
+				return;
+
+			int capacity = buffer.capacity();
+			while (capacity - buffer.position() < bytes)
+				capacity *= 2;
+			ByteBuffer grown = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.flip();
+			grown.put(buffer);
+			buffer = grown;
+		}
+
+		void put(byte value) {
+			ensure(1);
+			buffer.put(value);
+		}
+
+		void putVarLong(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		long getVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get();
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		void putBit(boolean value) {
+			if (value)
+				bitBuffer |= 1 << bitCount;
+			if (++bitCount == 8)
+				flushBits();
+		}
+
+		void flushBits() {
+			if (bitCount > 0) {
+				put((byte) bitBuffer);
+				bitBuffer = 0;
+				bitCount = 0;
+			}
+		}
+
+		boolean getBit() throws IOException {
+			if (bitCount == 0) {
+				require(1);
+				bitBuffer = buffer.get() & 0xFF;
+				bitCount = 8;
+			}
+			boolean value = (bitBuffer & 1) != 0;
+			bitBuffer >>>= 1;
+			bitCount--;
+			return value;
+		}
+	}
+}
@@ -14,6 +14,7 @@ import org.eclipse.collections.api.map.primitive.MutableLongObjectMap;
 import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.openjdk.jmh.annotations.*;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -79,18 +80,20 @@ public class MapTests {
 						buffer.append((char)random.nextInt(Character.MAX_VALUE));
 					return buffer.toString();
 				case 7: //Arbitrary object
-					return new ArbitraryPOJO();
+					return new ArbitraryPOJO(randObject(), randObject());
 			}
 			return null;
 		}
 
-		public class ArbitraryPOJO {
+		public static class ArbitraryPOJO implements Serializable { //Static so that it can be snapshotted without dragging the Context along
+
+			private static final long serialVersionUID = 1L;
 
 			public Object obj1, obj2;
 
-			public ArbitraryPOJO() {
-				obj1 = randObject();
-				obj2 = randObject();
+			public ArbitraryPOJO(Object obj1, Object obj2) {
+				this.obj1 = obj1;
+				this.obj2 = obj2;
 			}
 
 			@Override
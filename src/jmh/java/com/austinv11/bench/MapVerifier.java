@@ -0,0 +1,106 @@
+package com.austinv11.bench;
+
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sanity check for the maps written for these benchmarks, run from their setup so a broken map fails the run instead
+ * of producing a score. Replays a random put/remove sequence against the map and a {@link HashMap} and compares every
+ * key in range after each call.
+ */
+public final class MapVerifier {
+
+	private MapVerifier() {}
+
+	/**
+	 * @param keyRange Keys are drawn from {@code [-keyRange / 2, keyRange / 2)}, so the 0 key is always covered.
+	 */
+	public static void verify(String name, MapAdapter map, int keyRange, int operations, long seed) {
+		HashMap<Long, Object> expected = new HashMap<>();
+		Random random = new Random(seed);
+
+		for (int i = 0; i < operations; i++) {
+			long key = random.nextInt(keyRange) - keyRange / 2;
+			if (random.nextInt(3) == 0) {
+				map.remove(key);
+				expected.remove(key);
+			} else {
+				Object value = random.nextInt();
+				map.put(key, value);
+				expected.put(key, value);
+			}
+
+			check(name, map, expected, keyRange, i + 1);
+		}
+	}
+
+	/**
+	 * Replays the sequence against a one shard {@link ShardedLong2ObjectMap} while the shard's owner keeps changing
+	 * between the calling thread, a helper thread and nobody, so the calling thread's writes go through every path: its
+	 * buffer, the inbox and directly. The map is compared whenever all buffered writes have been applied.
+	 */
+	public static void verifyOwnerChanges(int keyRange, int operations, long seed) throws InterruptedException, ExecutionException {
+		ShardedLong2ObjectMap<Object> sharded = new ShardedLong2ObjectMap<>(1, keyRange);
+		MapAdapter map = MapAdapters.create(sharded);
+		HashMap<Long, Object> expected = new HashMap<>();
+		Random random = new Random(seed);
+		ExecutorService helper = Executors.newSingleThreadExecutor();
+		boolean ownsShard = false, helperOwnsShard = false;
+
+		try {
+			for (int i = 0; i < operations; i++) {
+				long key = random.nextInt(keyRange) - keyRange / 2;
+				switch (random.nextInt(16)) {
+					case 0: //Pass the shard on: us -> nobody -> helper or us -> nobody
+						if (ownsShard) {
+							sharded.unregister();
+							ownsShard = false;
+						} else if (helperOwnsShard) {
+							helper.submit(sharded::unregister).get();
+							helperOwnsShard = false;
+						} else if (random.nextBoolean()) {
+							helper.submit(sharded::register).get();
+							helperOwnsShard = true;
+						} else {
+							sharded.register();
+							ownsShard = true;
+						}
+						break;
+					case 1: //Apply everything buffered and compare
+						sharded.flush();
+						helper.submit(sharded::drain).get();
+						sharded.drain();
+						check("ShardedLong2ObjectMap", map, expected, keyRange, i + 1);
+						break;
+					case 2:
+					case 3:
+					case 4:
+					case 5:
+						map.remove(key);
+						expected.remove(key);
+						break;
+					default:
+						Object value = random.nextInt();
+						map.put(key, value);
+						expected.put(key, value);
+				}
+			}
+		} finally {
+			helper.shutdownNow();
+		}
+	}
+
+	private static void check(String name, MapAdapter map, HashMap<Long, Object> expected, int keyRange, int operations) {
+		for (long check = -keyRange / 2; check < keyRange - keyRange / 2; check++)
+			if (!Objects.equals(map.get(check), expected.get(check)))
+				throw new IllegalStateException(String.format("%s returned %s for key %d after %d operations, expected %s",
+						name, map.get(check), check, operations, expected.get(check)));
+		if (map.size() != expected.size())
+			throw new IllegalStateException(String.format("%s has size %d after %d operations, expected %d",
+					name, map.size(), operations, expected.size()));
+	}
+}
@@ -0,0 +1,141 @@
+package com.austinv11.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * NUMA layout of the machine as reported by Linux sysfs, plus best effort thread pinning through {@code taskset}.
+ *
+ * When sysfs has no node information (non-Linux, containers, single socket kernels without NUMA) the whole machine is
+ * treated as one node. Pinning is skipped when {@code -Dbench.affinity=false} is set or when {@code /proc/thread-self}
+ * or {@code taskset} aren't available, so everything still runs, just without placement.
+ */
+public final class NumaTopology {
+
+	private static final Path NODES = Paths.get("/sys/devices/system/node");
+	private static final boolean AFFINITY = Boolean.parseBoolean(System.getProperty("bench.affinity", "true"));
+
+	private static final List<String> NODE_CPUS = detectNodes();
+	private static volatile boolean pinningFailed;
+
+	private NumaTopology() {}
+
+	public static int nodeCount() {
+		return NODE_CPUS.size();
+	}
+
+	/**
+	 * @return The node's cpus in taskset's list format, e.g. {@code 0-7,16-23}.
+	 */
+	public static String cpusOf(int node) {
+		return NODE_CPUS.get(node);
+	}
+
+	/**
+	 * @return Every cpu of the node, expanded from its list format.
+	 */
+	public static int[] expandCpus(int node) {
+		List<Integer> cpus = new ArrayList<>();
+		for (String range : cpusOf(node).split(",")) {
+			int dash = range.indexOf('-');
+			int first = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+			int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+			for (int cpu = first; cpu <= last; cpu++)
+				cpus.add(cpu);
+		}
+
+		int[] expanded = new int[cpus.size()];
+		for (int i = 0; i < expanded.length; i++)
+			expanded[i] = cpus.get(i);
+		return expanded;
+	}
+
+	/**
+	 * @return The node the given worker is placed on, workers are spread round robin over the nodes.
+	 */
+	public static int nodeOf(int worker) {
+		return worker % nodeCount();
+	}
+
+	/**
+	 * Pins the calling thread to its own core: workers are spread round robin over the nodes and then over the cores of
+	 * their node. This only keeps the thread's memory local if the JVM allocates per node as well, see
+	 * {@code -XX:+UseNUMA}.
+	 *
+	 * @return Whether the thread was actually pinned.
+	 */
+	public static boolean pinCurrentThread(int worker) {
+		if (!AFFINITY || pinningFailed)
+			return false;
+
+		int[] cpus = expandCpus(nodeOf(worker));
+		int cpu = cpus[(worker / nodeCount()) % cpus.length];
+
+		try {
+			Path self = Paths.get("/proc/thread-self"); //Links to <pid>/task/<tid>
+			if (!Files.exists(self)) {
+				pinningFailed = true;
+				return false;
+			}
+			String tid = Files.readSymbolicLink(self).getFileName().toString();
+
+			Process process = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu), tid)
+					.redirectErrorStream(true)
+					.start();
+			try (InputStream output = process.getInputStream()) {
+				while (output.read() >= 0); //Drain so the process can't block on a full pipe
+			}
+			if (process.waitFor() == 0)
+				return true;
+		} catch (IOException e) {
+			//Most likely taskset isn't installed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		pinningFailed = true;
+		System.err.println("Thread pinning is unavailable, threads will be placed by the OS scheduler");
+		return false;
+	}
+
+	private static List<String> detectNodes() {
+		List<String> nodes = new ArrayList<>();
+		if (Files.isDirectory(NODES)) {
+			List<Path> nodeDirs = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(NODES, "node[0-9]*")) {
+				for (Path dir : stream)
+					nodeDirs.add(dir);
+			} catch (IOException e) {
+				nodeDirs.clear();
+			}
+			Collections.sort(nodeDirs, (a, b) -> Integer.compare(nodeId(a), nodeId(b)));
+
+			for (Path dir : nodeDirs) {
+				try {
+					String cpus = new String(Files.readAllBytes(dir.resolve("cpulist")), StandardCharsets.US_ASCII).trim();
+					if (!cpus.isEmpty()) //Memory only nodes have no cpus
+						nodes.add(cpus);
+				} catch (IOException e) {
+					//Skip unreadable nodes
+				}
+			}
+		}
+
+		if (nodes.isEmpty())
+			nodes.add("0-" + (Runtime.getRuntime().availableProcessors() - 1));
+		return Collections.unmodifiableList(nodes);
+	}
+
+	private static int nodeId(Path nodeDir) {
+		return Integer.parseInt(nodeDir.getFileName().toString().substring("node".length()));
+	}
+}
@@ -0,0 +1,378 @@
+package com.austinv11.bench;
+
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.util.concurrent.locks.StampedLock;
+
+import static com.austinv11.bench.LongHashing.*;
+
+/**
+ * A long -> Object map split into shards which each have a single owning writer thread.
+ *
+ * Every shard is a linear probing open addressing table (key 0 is the free marker, the 0 key itself is stored on the
+ * side) whose writes are made under the write lock of a {@link StampedLock}. Normally only the owner writes, so the
+ * lock is rarely contended and mostly serves as a sequence number: readers never take it, they read optimistically and
+ * retry until no write overlapped with the read. The lock is only ever held for one write or one handed over batch, so
+ * readers get through between batches, and a reader which keeps failing yields after {@link #READ_SPINS} tries in case
+ * the writer is waiting for its core.
+ *
+ * A thread becomes an owner through {@link #register()} (and stops being one through {@link #unregister()}), which
+ * also copies the shard into a freshly allocated table. With {@code -XX:+UseNUMA} the JVM allocates from the allocating
+ * thread's node, so once the owner is pinned (see {@link NumaTopology}) its table starts out in local memory. This is
+ * best effort: the collector may still move the table later, e.g. when promoting it to an interleaved old generation.
+ *
+ * Writes to a shard owned by another thread are collected in per thread buffers and handed to the owner in batches of
+ * {@link #BATCH_SIZE}, so they only become visible once the writer calls {@link #flush()} and the owner calls
+ * {@link #drain()}. If an owner falls too far behind the writer applies the owner's backlog itself, and writes to
+ * shards nobody owns are applied directly, after everything still queued for the shard. Either way the writes a thread
+ * makes to a shard are applied in the order it made them, also when the shard changes owner in between.
+ */
+@SuppressWarnings("unchecked")
+public class ShardedLong2ObjectMap<V> {
+
+	public static final int BATCH_SIZE = 64;
+	private static final int QUEUE_CAPACITY = 1_024; //Batches each shard can have waiting for its owner
+	private static final int READ_SPINS = 64;
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final Object REMOVED = new Object(); //Buffered value which stands for a remove
+
+	private final Shard[] shards;
+	private final ThreadLocal<Writer> writers;
+
+	public ShardedLong2ObjectMap(int shardCount, int expectedSize) {
+		if (shardCount < 1 || shardCount > 1 << 16)
+			throw new IllegalArgumentException("Shard count must be between 1 and 65536, got " + shardCount);
+
+		shards = new Shard[shardCount];
+		for (int i = 0; i < shardCount; i++)
+			shards[i] = new Shard(tableSize(expectedSize / shardCount, LOAD_FACTOR));
+		writers = ThreadLocal.withInitial(() -> new Writer(shardCount));
+	}
+
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @return The shard the key belongs to, taken from the high bits of its hash so it doesn't correlate with the slot.
+	 */
+	public int shardOf(long key) {
+		return (int) (((key * 0x9E3779B97F4A7C15L) >>> 48) % shards.length);
+	}
+
+	/**
+	 * Makes the calling thread the owner of an unowned shard, and moves the shard into a table allocated by it, so pin
+	 * the thread first. Whatever is still queued for the shard and the thread's own buffered writes to it are applied
+	 * first, since from now on the thread writes to it directly.
+	 *
+	 * @return The index of the claimed shard.
+	 */
+	public synchronized int register() {
+		Writer writer = writers.get();
+		for (int i = 0; i < shards.length; i++) {
+			Shard shard = shards[i];
+			if (shard == writer.owned)
+				return i;
+			if (writer.owned != null || shard.owner != null)
+				continue;
+
+			shard.drain();
+			long stamp = shard.lock.writeLock();
+			try {
+				shard.apply(writer.batches[i]);
+				shard.rehash(shard.table.keys.length); //Same size, but allocated by the owner
+				shard.owner = Thread.currentThread();
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			writer.owned = shard;
+			return i;
+		}
+		throw new IllegalStateException("All " + shards.length + " shards already have an owner");
+	}
+
+	/**
+	 * Publishes the calling thread's buffered writes and gives up the shard it owns, if any.
+	 */
+	public synchronized void unregister() {
+		flush();
+		Writer writer = writers.get();
+		if (writer.owned != null) {
+			writer.owned.owner = null;
+			writer.owned.drain(); //Batches handed over later are applied by their writer, see handOff()
+			writer.owned = null;
+		}
+	}
+
+	public V get(long key) {
+		Shard shard = shards[shardOf(key)];
+		StampedLock lock = shard.lock;
+
+		for (int tries = 1; ; tries++) {
+			long stamp = lock.tryOptimisticRead(); //0 while a write is in progress
+			if (stamp != 0) {
+				Object value = shard.lookup(key);
+				if (lock.validate(stamp)) //Otherwise a write overlapped, so the read may have been torn
+					return (V) value;
+			}
+			if (tries >= READ_SPINS)
+				Thread.yield();
+		}
+	}
+
+	public void put(long key, V value) {
+		write(key, value);
+	}
+
+	public void remove(long key) {
+		write(key, REMOVED);
+	}
+
+	/**
+	 * @return The number of applied entries, buffered writes aren't counted.
+	 */
+	public int size() {
+		int size = 0;
+		for (Shard shard : shards)
+			size += shard.size;
+		return size;
+	}
+
+	/**
+	 * Hands the calling thread's partially filled buffers over to their owners.
+	 */
+	public void flush() {
+		Writer writer = writers.get();
+		for (int i = 0; i < shards.length; i++) {
+			Batch batch = writer.batches[i];
+			if (batch.count > 0)
+				handOff(writer, i, batch);
+		}
+	}
+
+	/**
+	 * Applies every batch other threads handed to the calling thread's shard, a no-op for threads which own none.
+	 *
+	 * @return The number of batches applied.
+	 */
+	public int drain() {
+		Shard shard = writers.get().owned;
+		return shard == null ? 0 : shard.drain();
+	}
+
+	private void write(long key, Object value) {
+		int index = shardOf(key);
+		Shard shard = shards[index];
+		Thread owner = shard.owner;
+
+		if (owner == Thread.currentThread()) {
+			long stamp = shard.lock.writeLock();
+			try {
+				shard.apply(key, value);
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			return;
+		}
+
+		Writer writer = writers.get();
+		Batch batch = writer.batches[index];
+		batch.keys[batch.count] = key;
+		batch.values[batch.count] = value;
+		if (++batch.count == BATCH_SIZE || owner == null) //Without an owner the write goes through with the ones before it
+			handOff(writer, index, batch);
+	}
+
+	private void handOff(Writer writer, int index, Batch batch) {
+		Shard shard = shards[index];
+		if (shard.owner == null) { //Nobody would drain it, so apply it here, after the batches queued before it
+			shard.drain();
+			long stamp = shard.lock.writeLock();
+			try {
+				shard.apply(batch);
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			return;
+		}
+
+		while (!shard.inbox.offer(batch)) //The owner is behind, so apply its backlog for it, keeping the order
+			shard.drain();
+		writer.batches[index] = new Batch();
+		if (shard.owner == null) //The owner left meanwhile, its last drain may have missed the batch
+			shard.drain();
+	}
+
+	private static final class Batch {
+
+		final long[] keys = new long[BATCH_SIZE];
+		final Object[] values = new Object[BATCH_SIZE];
+		int count;
+	}
+
+	private static final class Writer {
+
+		final Batch[] batches;
+		Shard owned;
+
+		Writer(int shardCount) {
+			batches = new Batch[shardCount];
+			for (int i = 0; i < shardCount; i++)
+				batches[i] = new Batch();
+		}
+	}
+
+	private static final class Table { //Swapped as a whole on rehash, so a reader's keys, values and mask always match
+
+		final long[] keys;
+		final Object[] values;
+		final int mask;
+		final int resizeAt;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new Object[capacity];
+			mask = capacity - 1;
+			resizeAt = (int) (capacity * LOAD_FACTOR);
+		}
+	}
+
+	private static final class Shard {
+
+		final StampedLock lock = new StampedLock();
+		final ManyToOneConcurrentArrayQueue<Batch> inbox = new ManyToOneConcurrentArrayQueue<>(QUEUE_CAPACITY);
+		volatile Thread owner;
+
+		//Written under the write lock
+		Table table;
+		int size;
+		boolean hasZeroKey;
+		Object zeroValue;
+
+		Shard(int capacity) {
+			table = new Table(capacity);
+		}
+
+		Object lookup(long key) { //Must survive racing with a write, the caller validates the result
+			if (key == 0)
+				return hasZeroKey ? zeroValue : null;
+
+			Table table = this.table;
+			long[] keys = table.keys;
+			int mask = table.mask;
+			int slot = mix(key) & mask;
+			for (int probes = 0; probes <= mask; probes++) { //Bounded, a torn table might have no free slot left
+				long current = keys[slot];
+				if (current == key)
+					return table.values[slot];
+				if (current == 0)
+					return null;
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		int drain() {
+			int batches = 0;
+			while (!inbox.isEmpty()) {
+				long stamp = lock.writeLock(); //One batch at a time, so readers get through in between
+				try {
+					Batch batch = inbox.poll(); //The lock also makes this the queue's only consumer, whichever thread it is
+					if (batch == null) //Claimed by a writer, but not published yet
+						break;
+					apply(batch);
+				} finally {
+					lock.unlockWrite(stamp);
+				}
+				batches++;
+			}
+			return batches;
+		}
+
+		void apply(Batch batch) { //Empties the batch, so a thread can keep filling the same one
+			for (int i = 0; i < batch.count; i++) {
+				apply(batch.keys[i], batch.values[i]);
+				batch.values[i] = null;
+			}
+			batch.count = 0;
+		}
+
+		void apply(long key, Object value) {
+			if (value == REMOVED)
+				delete(key);
+			else
+				insert(key, value);
+		}
+
+		private void insert(long key, Object value) {
+			if (key == 0) {
+				if (!hasZeroKey) {
+					hasZeroKey = true;
+					size++;
+				}
+				zeroValue = value;
+				return;
+			}
+
+			Table table = this.table;
+			long[] keys = table.keys;
+			int mask = table.mask;
+			int slot = mix(key) & mask;
+			long current;
+			while ((current = keys[slot]) != 0) {
+				if (current == key) {
+					table.values[slot] = value;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table.values[slot] = value; //Value first, so a racing reader that sees the key never sees it without one
+			keys[slot] = key;
+			if (++size > table.resizeAt)
+				rehash(keys.length * 2);
+		}
+
+		private void delete(long key) {
+			if (key == 0) {
+				if (hasZeroKey) {
+					hasZeroKey = false;
+					zeroValue = null;
+					size--;
+				}
+				return;
+			}
+
+			Table table = this.table;
+			long[] keys = table.keys;
+			int mask = table.mask;
+			int slot = mix(key) & mask;
+			long current;
+			while ((current = keys[slot]) != 0) {
+				if (current == key) {
+					size--;
+					shiftKeys(keys, table.values, mask, slot);
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		private void rehash(int capacity) {
+			Table old = table;
+			Table table = new Table(capacity);
+			long[] keys = table.keys;
+			int mask = table.mask;
+			for (int i = 0; i < old.keys.length; i++) {
+				long key = old.keys[i];
+				if (key == 0)
+					continue;
+				int slot = mix(key) & mask;
+				while (keys[slot] != 0)
+					slot = (slot + 1) & mask;
+				keys[slot] = key;
+				table.values[slot] = old.values[i];
+			}
+			this.table = table;
+		}
+	}
+}
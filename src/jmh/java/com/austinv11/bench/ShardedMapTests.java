@@ -0,0 +1,149 @@
+package com.austinv11.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent reads and writes from a group of {@link #WRITERS} writer and {@link #READERS} reader threads sharing one
+ * map: the {@link ShardedLong2ObjectMap} (one shard per writer) against {@link java.util.concurrent.ConcurrentHashMap}
+ * and a fastutil map behind one coarse lock, like {@link MapTests} uses.
+ *
+ * Every thread pins itself to its own core through {@link NumaTopology} for every map type, writers first and spread
+ * over the NUMA nodes, so only the map differs between the runs. Pinning sticks to the thread for the rest of its
+ * fork, so keep forks enabled when running this next to other benchmarks.
+ *
+ * Pinning alone doesn't keep memory local, since by default the JVM allocates from one shared eden. The forks run with
+ * {@code -XX:+UseNUMA}, which gives every node its own part of eden (with the parallel and, from JDK 14, G1
+ * collectors), and each writer registers after pinning itself, so its shard is reallocated from its own node.
+ */
+@Fork(jvmArgsAppend = "-XX:+UseNUMA")
+public class ShardedMapTests {
+
+	private static final int BATCH = 1_024; //Operations per benchmark invocation
+	private static final int WRITERS = 2;
+	private static final int READERS = 2;
+
+	@State(Scope.Group)
+	public static class ShardedContext {
+
+		@Param({"ShardedLong2ObjectMap", "ConcurrentHashMap", "Long2ObjectOpenHashMap"})
+		public String mapType;
+
+		@Param({"1000", "1000000"})
+		public int keySpace;
+
+		public ShardedLong2ObjectMap<Object> sharded; //Only set for the sharded map
+		public MapAdapter map;
+		public Object[] values;
+
+		private final AtomicInteger writers = new AtomicInteger();
+		private final AtomicInteger readers = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void init() throws Exception {
+			MapTests.Context data = new MapTests.Context();
+			data.init();
+			values = data.testValues;
+
+			if (mapType.equals("ShardedLong2ObjectMap")) {
+				MapVerifier.verify("ShardedLong2ObjectMap", MapAdapters.create(new ShardedLong2ObjectMap<>(1, 0)), 64, 5_000, 1);
+				MapVerifier.verifyOwnerChanges(64, 50_000, 2);
+
+				sharded = new ShardedLong2ObjectMap<>(WRITERS, keySpace);
+				map = MapAdapters.create(sharded);
+			} else {
+				sharded = null;
+				map = new SynchronizedMapAdapter(MapAdapters.create(mapType)); //A no-op wrapper for ConcurrentHashMap
+			}
+			for (int i = 0; i < keySpace; i++) //The sharded map has no owners yet, so these are written directly
+				map.put(i, values[i % values.length]);
+		}
+
+		public int nextWorker(boolean writer) { //Writers take the first workers, so they are spread over the nodes first
+			return writer ? writers.getAndIncrement() % WRITERS : WRITERS + readers.getAndIncrement() % READERS;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class WriterContext { //Set up every iteration, since JMH may run an iteration on different pool threads
+
+		public ShardedContext context; //Reached through here, JMH 1.12 sees a cycle if benchmarks also take it directly
+		private long random = System.nanoTime() | 1;
+
+		@Setup(Level.Iteration)
+		public void init(ShardedContext context) {
+			this.context = context;
+			NumaTopology.pinCurrentThread(context.nextWorker(true));
+			if (context.sharded != null) //Claim a shard after pinning, so its table is reallocated on this thread's node
+				context.sharded.register();
+		}
+
+		@TearDown(Level.Iteration)
+		public void clean() { //May race with the other writer's last invocation, whose writes to this shard then go in directly
+			if (context.sharded != null)
+				context.sharded.unregister();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ReaderContext {
+
+		public ShardedContext context;
+		private long random = System.nanoTime() | 1;
+
+		@Setup(Level.Iteration)
+		public void init(ShardedContext context) {
+			this.context = context;
+			NumaTopology.pinCurrentThread(context.nextWorker(false));
+		}
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(WRITERS)
+	@OperationsPerInvocation(BATCH)
+	public void write(WriterContext writer) { //7 puts to every remove, so most of the key space stays live
+		ShardedContext context = writer.context;
+		MapAdapter map = context.map;
+		Object[] values = context.values;
+		long random = writer.random;
+
+		for (int i = 0; i < BATCH; i++) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			int key = (int) ((random >>> 33) % context.keySpace);
+			if ((random & 7) == 0)
+				map.remove(key);
+			else
+				map.put(key, values[key % values.length]);
+		}
+		writer.random = random;
+
+		ShardedLong2ObjectMap<Object> sharded = context.sharded;
+		if (sharded != null) { //Publish this batch's buffered writes and apply what the other writers sent us
+			sharded.flush();
+			sharded.drain();
+		}
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(READERS)
+	@OperationsPerInvocation(BATCH)
+	public void read(ReaderContext reader, Blackhole blackhole) {
+		ShardedContext context = reader.context;
+		MapAdapter map = context.map;
+		long random = reader.random;
+
+		for (int i = 0; i < BATCH; i++) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			blackhole.consume(map.get((random >>> 33) % context.keySpace));
+		}
+		reader.random = random;
+	}
+}
@@ -0,0 +1,262 @@
+package com.austinv11.bench;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Benchmarks for tiny, short-lived maps (e.g. per-session state) which are created and thrown away constantly.
+ *
+ * Run with {@code -prof gc} to see the allocation rate (and so the GC churn) of each map type.
+ */
+@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+public class SmallMapTests {
+
+	@State(Scope.Benchmark)
+	public static class SmallContext {
+
+		@Param({"0", "1", "2", "4", "8", "16", "24", "32", "64"})
+		public int size;
+
+		public long[] testKeys;
+		public long[] missingKeys;
+		public Object[] testValues;
+		public Object[] testValues2;
+
+		//Populated once, so the lookup benchmarks only measure get()
+		public AdaptiveLong2ObjectMap<Object> adaptiveLong2ObjectMap;
+		public AdaptiveLong2ObjectMap<Object> branchFreeAdaptiveLong2ObjectMap;
+		public Long2ObjectArrayMap<Object> long2ObjectArrayMap;
+		public Long2ObjectOpenHashMap<Object> long2ObjectOpenHashMap;
+		public HashMap<Long, Object> hashMap;
+
+		@Setup(Level.Trial)
+		public void init() {
+			MapTests.Context data = new MapTests.Context();
+			data.init();
+			Random random = data.random;
+
+			//Session style keys: sparse and random instead of 0..n
+			testKeys = new long[size];
+			missingKeys = new long[size];
+			testValues = new Object[size];
+			testValues2 = new Object[size];
+			HashMap<Long, Boolean> used = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				testKeys[i] = uniqueKey(random, used);
+				missingKeys[i] = uniqueKey(random, used);
+				testValues[i] = data.testValues[i];
+				testValues2[i] = data.testValues2[i];
+			}
+			data.clean();
+
+			adaptiveLong2ObjectMap = new AdaptiveLong2ObjectMap<>();
+			branchFreeAdaptiveLong2ObjectMap = new AdaptiveLong2ObjectMap<>(0, true);
+			long2ObjectArrayMap = new Long2ObjectArrayMap<>();
+			long2ObjectOpenHashMap = new Long2ObjectOpenHashMap<>();
+			hashMap = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				adaptiveLong2ObjectMap.put(testKeys[i], testValues[i]);
+				branchFreeAdaptiveLong2ObjectMap.put(testKeys[i], testValues[i]);
+				long2ObjectArrayMap.put(testKeys[i], testValues[i]);
+				long2ObjectOpenHashMap.put(testKeys[i], testValues[i]);
+				hashMap.put(testKeys[i], testValues[i]);
+			}
+
+			//Around the promotion threshold, so both the small and the hashed mode (and the switch) are covered
+			for (int keyRange : new int[]{AdaptiveLong2ObjectMap.PROMOTE_THRESHOLD / 2, AdaptiveLong2ObjectMap.PROMOTE_THRESHOLD + 1, 4 * AdaptiveLong2ObjectMap.PROMOTE_THRESHOLD}) {
+				for (boolean branchFreeScan : new boolean[]{true, false}) {
+					final AdaptiveLong2ObjectMap<Object> map = new AdaptiveLong2ObjectMap<>(0, branchFreeScan);
+					MapVerifier.verify("AdaptiveLong2ObjectMap", new MapAdapter() {
+						public Object get(long key) { return map.get(key); }
+						public void put(long key, Object value) { map.put(key, value); }
+						public void remove(long key) { map.remove(key); }
+						public int size() { return map.size(); }
+					}, keyRange, 2_000, keyRange);
+				}
+			}
+		}
+
+		private static long uniqueKey(Random random, HashMap<Long, Boolean> used) {
+			long key;
+			do {
+				key = random.nextLong();
+			} while (used.put(key, Boolean.TRUE) != null);
+			return key;
+		}
+	}
+
+	//AdaptiveLong2ObjectMap
+
+	@Benchmark
+	public AdaptiveLong2ObjectMap synchronizedAdaptiveLong2ObjectMapCreate(SmallContext context) { //Creates and populates a map
+		AdaptiveLong2ObjectMap<Object> map = new AdaptiveLong2ObjectMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+		}
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedAdaptiveLong2ObjectMapLookup(SmallContext context, Blackhole blackhole) { //A successful and an unsuccessful get() call per entry of a map populated at setup
+		AdaptiveLong2ObjectMap<Object> map = context.adaptiveLong2ObjectMap;
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++) {
+				blackhole.consume(map.get(context.testKeys[i]));
+				blackhole.consume(map.get(context.missingKeys[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	public void synchronizedBranchFreeAdaptiveLong2ObjectMapLookup(SmallContext context, Blackhole blackhole) { //The same lookups with a scan which compares every entry without branching
+		AdaptiveLong2ObjectMap<Object> map = context.branchFreeAdaptiveLong2ObjectMap;
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++) {
+				blackhole.consume(map.get(context.testKeys[i]));
+				blackhole.consume(map.get(context.missingKeys[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	public AdaptiveLong2ObjectMap synchronizedAdaptiveLong2ObjectMapChurn(SmallContext context) { //A full session lifecycle: populate, update and then remove everything
+		AdaptiveLong2ObjectMap<Object> map = new AdaptiveLong2ObjectMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues2[i]);
+			for (int i = 0; i < context.size; i++)
+				map.remove(context.testKeys[i]);
+		}
+		return map;
+	}
+
+	//Fastutil
+
+	@Benchmark
+	public Long2ObjectArrayMap synchronizedLong2ObjectArrayMapCreate(SmallContext context) {
+		Long2ObjectArrayMap<Object> map = new Long2ObjectArrayMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+		}
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectArrayMapLookup(SmallContext context, Blackhole blackhole) {
+		Long2ObjectArrayMap<Object> map = context.long2ObjectArrayMap;
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++) {
+				blackhole.consume(map.get(context.testKeys[i]));
+				blackhole.consume(map.get(context.missingKeys[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectArrayMap synchronizedLong2ObjectArrayMapChurn(SmallContext context) {
+		Long2ObjectArrayMap<Object> map = new Long2ObjectArrayMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues2[i]);
+			for (int i = 0; i < context.size; i++)
+				map.remove(context.testKeys[i]);
+		}
+		return map;
+	}
+
+	@Benchmark
+	public Long2ObjectOpenHashMap synchronizedLong2ObjectOpenHashMapCreate(SmallContext context) {
+		Long2ObjectOpenHashMap<Object> map = new Long2ObjectOpenHashMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+		}
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectOpenHashMapLookup(SmallContext context, Blackhole blackhole) {
+		Long2ObjectOpenHashMap<Object> map = context.long2ObjectOpenHashMap;
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++) {
+				blackhole.consume(map.get(context.testKeys[i]));
+				blackhole.consume(map.get(context.missingKeys[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectOpenHashMap synchronizedLong2ObjectOpenHashMapChurn(SmallContext context) {
+		Long2ObjectOpenHashMap<Object> map = new Long2ObjectOpenHashMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues2[i]);
+			for (int i = 0; i < context.size; i++)
+				map.remove(context.testKeys[i]);
+		}
+		return map;
+	}
+
+	//JDK Maps
+
+	@Benchmark
+	public HashMap synchronizedHashMapCreate(SmallContext context) {
+		HashMap<Long, Object> map = new HashMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+		}
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedHashMapLookup(SmallContext context, Blackhole blackhole) {
+		HashMap<Long, Object> map = context.hashMap;
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++) {
+				blackhole.consume(map.get(context.testKeys[i]));
+				blackhole.consume(map.get(context.missingKeys[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	public HashMap synchronizedHashMapChurn(SmallContext context) {
+		HashMap<Long, Object> map = new HashMap<>();
+
+		synchronized (map) {
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues[i]);
+			for (int i = 0; i < context.size; i++)
+				map.put(context.testKeys[i], context.testValues2[i]);
+			for (int i = 0; i < context.size; i++)
+				map.remove(context.testKeys[i]);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,418 @@
+package com.austinv11.bench;
+
+import com.carrotsearch.hppcrt.cursors.LongObjectCursor;
+import com.koloboke.collect.map.LongObjCursor;
+import com.koloboke.collect.map.hash.HashLongObjMap;
+import com.koloboke.collect.map.hash.HashLongObjMaps;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Checkpoint benchmarks: each map is snapshotted to/restored from a file channel, either with the columnar
+ * {@link MapSnapshot} format or with the serialization the map ships with.
+ */
+@SuppressWarnings({"SynchronizationOnLocalVariableOrMethodParameter", "unchecked"})
+public class SnapshotTests {
+
+	private static final int STREAM_BUFFER = 1 << 16;
+
+	@State(Scope.Thread)
+	public static class SnapshotContext {
+
+		public MapTests.Context data;
+		public MapSnapshot snapshot;
+		public FileChannel out; //Scratch file for snapshots being taken
+		public FileChannel columnar, javaHashMap, troveExternal, fastutilSerial, eclipseExternal; //Pre-written snapshots to restore
+		public long columnarSize, javaHashMapSize, troveExternalSize, fastutilSerialSize, eclipseExternalSize;
+
+		//Populated maps to snapshot
+		public HashMap<Long, Object> hashMap;
+		public ConcurrentHashMap<Long, Object> concurrentHashMap;
+		public Long2ObjectArrayMap<Object> long2ObjectArrayMap;
+		public Long2ObjectOpenHashMap<Object> long2ObjectOpenHashMap;
+		public LongObjectHashMap<Object> longObjectHashMap;
+		public HashLongObjMap<Object> hashLongObjMap;
+		public TLongObjectHashMap<Object> tLongObjectHashMap;
+		public com.carrotsearch.hppcrt.maps.LongObjectHashMap<Object> hashLongObjectMap;
+		public Long2ObjectHashMap<Object> long2ObjectHashMap;
+
+		@Setup(Level.Trial)
+		public void init() throws IOException {
+			data = new MapTests.Context();
+			data.init();
+			snapshot = new MapSnapshot();
+
+			hashMap = new HashMap<>();
+			concurrentHashMap = new ConcurrentHashMap<>();
+			long2ObjectArrayMap = new Long2ObjectArrayMap<>();
+			long2ObjectOpenHashMap = new Long2ObjectOpenHashMap<>();
+			longObjectHashMap = new LongObjectHashMap<>();
+			hashLongObjMap = HashLongObjMaps.newMutableMap();
+			tLongObjectHashMap = new TLongObjectHashMap<>();
+			hashLongObjectMap = new com.carrotsearch.hppcrt.maps.LongObjectHashMap<>();
+			long2ObjectHashMap = new Long2ObjectHashMap<>();
+			for (int i = 0; i < data.testValues.length; i++) {
+				long key = data.testKeys[i];
+				Object value = data.testValues[i];
+				hashMap.put(key, value);
+				concurrentHashMap.put(key, value);
+				long2ObjectArrayMap.put(key, value);
+				long2ObjectOpenHashMap.put(key, value);
+				longObjectHashMap.put(key, value);
+				hashLongObjMap.put(key, value);
+				tLongObjectHashMap.put(key, value);
+				hashLongObjectMap.put(key, value);
+				long2ObjectHashMap.put(key, value);
+			}
+
+			out = tempChannel();
+
+			//Every map holds the same entries, so one columnar snapshot serves all of the restores
+			columnar = tempChannel();
+			for (int i = 0; i < data.testValues.length; i++)
+				snapshot.add(data.testKeys[i], data.testValues[i]);
+			columnarSize = snapshot.write(columnar);
+
+			javaHashMap = tempChannel();
+			javaHashMapSize = writeObject(javaHashMap, hashMap);
+			troveExternal = tempChannel();
+			troveExternalSize = writeObject(troveExternal, tLongObjectHashMap);
+			fastutilSerial = tempChannel();
+			fastutilSerialSize = writeObject(fastutilSerial, long2ObjectOpenHashMap);
+			eclipseExternal = tempChannel();
+			eclipseExternalSize = writeObject(eclipseExternal, longObjectHashMap);
+
+			System.out.println(String.format("Snapshot sizes (bytes): columnar=%d, java HashMap=%d, trove Externalizable=%d, fastutil Serializable=%d, eclipse Externalizable=%d",
+					columnarSize, javaHashMapSize, troveExternalSize, fastutilSerialSize, eclipseExternalSize));
+		}
+
+		@TearDown(Level.Trial)
+		public void clean() throws IOException {
+			for (FileChannel channel : new FileChannel[]{out, columnar, javaHashMap, troveExternal, fastutilSerial, eclipseExternal})
+				channel.close();
+			data.clean();
+		}
+
+		public FileChannel rewind(FileChannel channel) throws IOException {
+			channel.position(0);
+			return channel;
+		}
+
+		public long writeObject(FileChannel channel, Object object) throws IOException {
+			rewind(channel);
+			ObjectOutputStream stream = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER));
+			stream.writeObject(object);
+			stream.flush(); //Not closed, that would close the channel too
+			return channel.position();
+		}
+
+		public Object readObject(FileChannel channel) throws IOException, ClassNotFoundException {
+			rewind(channel);
+			return new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel), STREAM_BUFFER)).readObject();
+		}
+
+		private static FileChannel tempChannel() throws IOException {
+			Path file = Files.createTempFile("map-snapshot", ".bin");
+			return FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE);
+		}
+	}
+
+	@AuxCounters
+	@State(Scope.Thread)
+	public static class SnapshotCounters { //Bytes moved through the channel, reported per time unit alongside the op rate
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	//Columnar snapshots
+
+	@Benchmark
+	public void synchronizedHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		HashMap<Long, Object> map = context.hashMap;
+
+		synchronized (map) {
+			for (Map.Entry<Long, Object> entry : map.entrySet())
+				context.snapshot.add(entry.getKey(), entry.getValue());
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public HashMap synchronizedHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		HashMap<Long, Object> map = new HashMap<>((int) (size / 0.75f) + 1);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void concurrentHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		for (Map.Entry<Long, Object> entry : context.concurrentHashMap.entrySet())
+			context.snapshot.add(entry.getKey(), entry.getValue());
+		counters.bytes += context.snapshot.write(context.rewind(context.out));
+	}
+
+	@Benchmark
+	public ConcurrentHashMap concurrentHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		ConcurrentHashMap<Long, Object> map = new ConcurrentHashMap<>(size);
+
+		context.snapshot.drain(map::put);
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectArrayMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		Long2ObjectArrayMap<Object> map = context.long2ObjectArrayMap;
+
+		synchronized (map) {
+			for (Long2ObjectMap.Entry<Object> entry : map.long2ObjectEntrySet())
+				context.snapshot.add(entry.getLongKey(), entry.getValue());
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectArrayMap synchronizedLong2ObjectArrayMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		long[] keys = new long[size];
+		Object[] values = new Object[size];
+		Long2ObjectArrayMap<Object> map = new Long2ObjectArrayMap<>(keys, values, size); //Wraps the arrays without copying
+
+		synchronized (map) {
+			context.snapshot.drain(keys, values); //Keys are unique, so the backing arrays can be filled in directly
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectOpenHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		Long2ObjectOpenHashMap<Object> map = context.long2ObjectOpenHashMap;
+
+		synchronized (map) {
+			for (Long2ObjectMap.Entry<Object> entry : map.long2ObjectEntrySet())
+				context.snapshot.add(entry.getLongKey(), entry.getValue());
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectOpenHashMap synchronizedLong2ObjectOpenHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		Long2ObjectOpenHashMap<Object> map = new Long2ObjectOpenHashMap<>(size);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void manualSynchronizedLongObjectHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		LongObjectHashMap<Object> map = context.longObjectHashMap;
+
+		synchronized (map) {
+			map.forEachKeyValue(context.snapshot::add);
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public LongObjectHashMap manualSynchronizedLongObjectHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		LongObjectHashMap<Object> map = new LongObjectHashMap<>(size);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedHashLongObjMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		HashLongObjMap<Object> map = context.hashLongObjMap;
+
+		synchronized (map) {
+			LongObjCursor<Object> cursor = map.cursor();
+			while (cursor.moveNext())
+				context.snapshot.add(cursor.key(), cursor.value());
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public HashLongObjMap synchronizedHashLongObjMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		HashLongObjMap<Object> map = HashLongObjMaps.newMutableMap(size);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void manualSnchronizedTLongObjectHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		TLongObjectHashMap<Object> map = context.tLongObjectHashMap;
+
+		synchronized (map) {
+			TLongObjectIterator<Object> iterator = map.iterator();
+			while (iterator.hasNext()) {
+				iterator.advance();
+				context.snapshot.add(iterator.key(), iterator.value());
+			}
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public TLongObjectHashMap manualSnchronizedTLongObjectHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		TLongObjectHashMap<Object> map = new TLongObjectHashMap<>(size);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedHashLongObjectMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		com.carrotsearch.hppcrt.maps.LongObjectHashMap<Object> map = context.hashLongObjectMap;
+
+		synchronized (map) {
+			for (LongObjectCursor<Object> cursor : map)
+				context.snapshot.add(cursor.key, cursor.value);
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public com.carrotsearch.hppcrt.maps.LongObjectHashMap<Object> synchronizedHashLongObjectMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		com.carrotsearch.hppcrt.maps.LongObjectHashMap<Object> map = new com.carrotsearch.hppcrt.maps.LongObjectHashMap<>(size);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectHashMapColumnarSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		Long2ObjectHashMap<Object> map = context.long2ObjectHashMap;
+
+		synchronized (map) {
+			for (Map.Entry<Long, Object> entry : map.entrySet())
+				context.snapshot.add(entry.getKey(), entry.getValue());
+			counters.bytes += context.snapshot.write(context.rewind(context.out));
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectHashMap synchronizedLong2ObjectHashMapColumnarRestore(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		int size = context.snapshot.read(context.rewind(context.columnar));
+		Long2ObjectHashMap<Object> map = new Long2ObjectHashMap<>(size * 2, 0.5f);
+
+		synchronized (map) {
+			context.snapshot.drain(map::put);
+		}
+		counters.bytes += context.columnarSize;
+		return map;
+	}
+
+	//Built-in serialization, for comparison
+
+	@Benchmark
+	public void synchronizedHashMapJavaSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		HashMap<Long, Object> map = context.hashMap;
+
+		synchronized (map) {
+			counters.bytes += context.writeObject(context.out, map);
+		}
+	}
+
+	@Benchmark
+	public HashMap synchronizedHashMapJavaRestore(SnapshotContext context, SnapshotCounters counters) throws IOException, ClassNotFoundException {
+		counters.bytes += context.javaHashMapSize;
+		return (HashMap) context.readObject(context.javaHashMap);
+	}
+
+	@Benchmark
+	public void manualSnchronizedTLongObjectHashMapExternalizableSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		TLongObjectHashMap<Object> map = context.tLongObjectHashMap;
+
+		synchronized (map) {
+			counters.bytes += context.writeObject(context.out, map);
+		}
+	}
+
+	@Benchmark
+	public TLongObjectHashMap manualSnchronizedTLongObjectHashMapExternalizableRestore(SnapshotContext context, SnapshotCounters counters) throws IOException, ClassNotFoundException {
+		counters.bytes += context.troveExternalSize;
+		return (TLongObjectHashMap) context.readObject(context.troveExternal);
+	}
+
+	@Benchmark
+	public void synchronizedLong2ObjectOpenHashMapSerializableSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		Long2ObjectOpenHashMap<Object> map = context.long2ObjectOpenHashMap;
+
+		synchronized (map) {
+			counters.bytes += context.writeObject(context.out, map);
+		}
+	}
+
+	@Benchmark
+	public Long2ObjectOpenHashMap synchronizedLong2ObjectOpenHashMapSerializableRestore(SnapshotContext context, SnapshotCounters counters) throws IOException, ClassNotFoundException {
+		counters.bytes += context.fastutilSerialSize;
+		return (Long2ObjectOpenHashMap) context.readObject(context.fastutilSerial);
+	}
+
+	@Benchmark
+	public void manualSynchronizedLongObjectHashMapExternalizableSnapshot(SnapshotContext context, SnapshotCounters counters) throws IOException {
+		LongObjectHashMap<Object> map = context.longObjectHashMap;
+
+		synchronized (map) {
+			counters.bytes += context.writeObject(context.out, map);
+		}
+	}
+
+	@Benchmark
+	public LongObjectHashMap manualSynchronizedLongObjectHashMapExternalizableRestore(SnapshotContext context, SnapshotCounters counters) throws IOException, ClassNotFoundException {
+		counters.bytes += context.eclipseExternalSize;
+		return (LongObjectHashMap) context.readObject(context.eclipseExternal);
+	}
+}
@@ -0,0 +1,77 @@
+package com.austinv11.bench;
+
+/**
+ * Locks the wrapped map around every call (unless it is thread safe already), the uninstrumented baseline for
+ * {@link InstrumentedMapAdapter}.
+ */
+public class SynchronizedMapAdapter implements MapAdapter {
+
+	private final MapAdapter map;
+	private final boolean locked;
+
+	public SynchronizedMapAdapter(MapAdapter map) {
+		this.map = map;
+		this.locked = !map.isThreadSafe();
+	}
+
+	@Override
+	public Object get(long key) {
+		if (!locked)
+			return map.get(key);
+
+		synchronized (map) {
+			return map.get(key);
+		}
+	}
+
+	@Override
+	public void put(long key, Object value) {
+		if (!locked) {
+			map.put(key, value);
+			return;
+		}
+
+		synchronized (map) {
+			map.put(key, value);
+		}
+	}
+
+	@Override
+	public void remove(long key) {
+		if (!locked) {
+			map.remove(key);
+			return;
+		}
+
+		synchronized (map) {
+			map.remove(key);
+		}
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public void compact() {
+		synchronized (map) {
+			map.compact();
+		}
+	}
+
+	@Override
+	public int capacity() {
+		return map.capacity();
+	}
+
+	@Override
+	public int probeLength(long key) {
+		return map.probeLength(key);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+}
@@ -0,0 +1,254 @@
+package com.austinv11.bench;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Experimental open addressing long -> Object map whose probes compare a whole group of keys at once.
+ *
+ * The table is split into groups of {@link #GROUP} keys (the lane count of the preferred {@link LongVector} species,
+ * usually 4 or 8). A key hashes to a group, and each probe step loads the group into a vector and compares every key
+ * in one instruction. A lookup is over as soon as a group holds the key or any empty slot, so misses rarely need more
+ * than one step even at high load factors. Removed keys leave a tombstone behind so that probe chains stay intact,
+ * and keys which collide with the two sentinels are stored on the side.
+ *
+ * If the hardware has no usable vector shape (or {@code vectorized} is false) the same layout is probed with a
+ * scalar loop instead.
+ */
+@SuppressWarnings("unchecked")
+public class VectorLong2ObjectMap<V> {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	public static final boolean SIMD_AVAILABLE = SPECIES.length() >= 2;
+	public static final int GROUP = SIMD_AVAILABLE ? SPECIES.length() : 4;
+
+	private static final long EMPTY = 0;
+	private static final long TOMBSTONE = Long.MIN_VALUE;
+
+	private final boolean vectorized;
+	private final float loadFactor;
+
+	private long[] keys;
+	private Object[] values;
+	private int groupMask;
+	private int size; //Live entries, including the sentinel keys
+	private int used; //Non-empty table slots, live or tombstone
+	private int resizeAt;
+
+	private boolean hasEmptyKey, hasTombstoneKey;
+	private Object emptyKeyValue, tombstoneKeyValue;
+
+	public VectorLong2ObjectMap() {
+		this(16, 0.75f, SIMD_AVAILABLE);
+	}
+
+	public VectorLong2ObjectMap(int expectedSize, float loadFactor) {
+		this(expectedSize, loadFactor, SIMD_AVAILABLE);
+	}
+
+	public VectorLong2ObjectMap(int expectedSize, float loadFactor, boolean vectorized) {
+		if (loadFactor <= 0 || loadFactor >= 1)
+			throw new IllegalArgumentException("Load factor must be between 0 and 1 (exclusive)");
+
+		this.vectorized = vectorized && SIMD_AVAILABLE;
+		this.loadFactor = loadFactor;
+		allocate(groupsFor(expectedSize));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() { //Slots in the table, always a power of 2
+		return keys.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == EMPTY)
+			return hasEmptyKey;
+		if (key == TOMBSTONE)
+			return hasTombstoneKey;
+		return find(key) >= 0;
+	}
+
+	public V get(long key) {
+		if (key == EMPTY)
+			return (V) emptyKeyValue;
+		if (key == TOMBSTONE)
+			return (V) tombstoneKeyValue;
+
+		int slot = find(key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	public V put(long key, V value) {
+		if (key == EMPTY) {
+			V previous = (V) emptyKeyValue;
+			if (!hasEmptyKey) {
+				hasEmptyKey = true;
+				size++;
+			}
+			emptyKeyValue = value;
+			return previous;
+		}
+		if (key == TOMBSTONE) {
+			V previous = (V) tombstoneKeyValue;
+			if (!hasTombstoneKey) {
+				hasTombstoneKey = true;
+				size++;
+			}
+			tombstoneKeyValue = value;
+			return previous;
+		}
+
+		int slot = find(key);
+		if (slot >= 0) {
+			V previous = (V) values[slot];
+			values[slot] = value;
+			return previous;
+		}
+
+		slot = freeSlot(key);
+		if (keys[slot] == EMPTY)
+			used++;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		if (used > resizeAt)
+			rehash();
+		return null;
+	}
+
+	public V remove(long key) {
+		if (key == EMPTY) {
+			V previous = (V) emptyKeyValue;
+			if (hasEmptyKey) {
+				hasEmptyKey = false;
+				emptyKeyValue = null;
+				size--;
+			}
+			return previous;
+		}
+		if (key == TOMBSTONE) {
+			V previous = (V) tombstoneKeyValue;
+			if (hasTombstoneKey) {
+				hasTombstoneKey = false;
+				tombstoneKeyValue = null;
+				size--;
+			}
+			return previous;
+		}
+
+		int slot = find(key);
+		if (slot < 0)
+			return null;
+		V previous = (V) values[slot];
+		keys[slot] = TOMBSTONE;
+		values[slot] = null;
+		size--;
+		return previous;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		hasEmptyKey = hasTombstoneKey = false;
+		emptyKeyValue = tombstoneKeyValue = null;
+		size = used = 0;
+	}
+
+	private int find(long key) {
+		long[] keys = this.keys;
+		int group = mix(key) & groupMask;
+		while (true) {
+			int base = group * GROUP;
+			if (vectorized) {
+				LongVector candidates = LongVector.fromArray(SPECIES, keys, base);
+				VectorMask<Long> hits = candidates.eq(key);
+				if (hits.anyTrue())
+					return base + hits.firstTrue();
+				if (candidates.eq(EMPTY).anyTrue())
+					return -1;
+			} else {
+				boolean sawEmpty = false;
+				for (int i = base; i < base + GROUP; i++) {
+					long current = keys[i];
+					if (current == key)
+						return i;
+					if (current == EMPTY)
+						sawEmpty = true;
+				}
+				if (sawEmpty)
+					return -1;
+			}
+			group = (group + 1) & groupMask;
+		}
+	}
+
+	private int freeSlot(long key) { //First empty or tombstone slot along the key's probe chain
+		long[] keys = this.keys;
+		int group = mix(key) & groupMask;
+		while (true) {
+			int base = group * GROUP;
+			if (vectorized) {
+				LongVector candidates = LongVector.fromArray(SPECIES, keys, base);
+				VectorMask<Long> free = candidates.eq(EMPTY).or(candidates.eq(TOMBSTONE));
+				if (free.anyTrue())
+					return base + free.firstTrue();
+			} else {
+				for (int i = base; i < base + GROUP; i++) {
+					long current = keys[i];
+					if (current == EMPTY || current == TOMBSTONE)
+						return i;
+				}
+			}
+			group = (group + 1) & groupMask;
+		}
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		//Only grow if the live entries need it, otherwise this just clears out the tombstones
+		int groups = groupMask + 1;
+		int live = size - (hasEmptyKey ? 1 : 0) - (hasTombstoneKey ? 1 : 0);
+		allocate(live * 2 > resizeAt ? groups * 2 : groups);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key == EMPTY || key == TOMBSTONE)
+				continue;
+			int slot = freeSlot(key);
+			keys[slot] = key;
+			values[slot] = oldValues[i];
+			used++;
+		}
+	}
+
+	private void allocate(int groups) {
+		int capacity = groups * GROUP;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		groupMask = groups - 1;
+		used = 0;
+		resizeAt = Math.min((int) (capacity * loadFactor), capacity - 1); //Always leave an empty slot to end probes on
+	}
+
+	private int groupsFor(int expectedSize) {
+		int slots = (int) Math.ceil(Math.max(expectedSize, 1) / (double) loadFactor) + 1;
+		int groups = (slots + GROUP - 1) / GROUP;
+		return Math.max(2, Integer.highestOneBit(groups - 1) << 1);
+	}
+
+	private static int mix(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
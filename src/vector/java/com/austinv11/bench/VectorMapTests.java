@@ -0,0 +1,132 @@
+package com.austinv11.bench;
+
+import com.koloboke.collect.hash.HashConfig;
+import com.koloboke.collect.map.hash.HashLongObjMap;
+import com.koloboke.collect.map.hash.HashLongObjMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Lookup benchmarks for {@link VectorLong2ObjectMap}, run with {@code gradlew jmhVector -PvectorJdk=/path/to/jdk16+}.
+ *
+ * Every map is filled up to the given load factor ahead of time, and each invocation makes one {@code get()} call per
+ * entry where only {@code hitPercent}% of the keys are present, e.g. a dedup filter which mostly sees new keys. The
+ * tables round their capacity up to a power of 2, so they are sized for {@code size} entries first and then filled
+ * with {@code capacity * loadFactor} entries (just under, so none of them resize) to actually reach the load factor.
+ */
+public class VectorMapTests {
+
+	@State(Scope.Benchmark)
+	public static class VectorContext {
+
+		@Param({"1000", "100000"})
+		public int size;
+
+		@Param({"0.5", "0.75", "0.9"})
+		public float loadFactor;
+
+		@Param({"50", "10"})
+		public int hitPercent;
+
+		public long[] lookupKeys;
+
+		public VectorLong2ObjectMap<Object> vectorMap;
+		public VectorLong2ObjectMap<Object> scalarMap;
+		public Long2ObjectOpenHashMap<Object> long2ObjectOpenHashMap;
+		public HashLongObjMap<Object> hashLongObjMap;
+
+		@Setup(Level.Trial)
+		public void init() {
+			Random random = new Random();
+			HashSet<Long> used = new HashSet<>();
+
+			vectorMap = new VectorLong2ObjectMap<>(size, loadFactor, true);
+			int capacity = vectorMap.capacity();
+			int entries = (int) (capacity * loadFactor) - 1; //One short, fastutil grows as soon as it reaches its limit
+
+			scalarMap = new VectorLong2ObjectMap<>(size, loadFactor, false);
+			InspectableLong2ObjectOpenHashMap long2ObjectOpenHashMap = new InspectableLong2ObjectOpenHashMap(entries, loadFactor);
+			this.long2ObjectOpenHashMap = long2ObjectOpenHashMap;
+			hashLongObjMap = HashLongObjMaps.<Object>getDefaultFactory()
+					.withHashConfig(HashConfig.fromLoads(loadFactor / 2, loadFactor, Math.min(0.99, loadFactor + 0.05)))
+					.newMutableMap(entries);
+
+			long[] keys = new long[entries];
+			for (int i = 0; i < entries; i++) {
+				keys[i] = uniqueKey(random, used);
+				Object value = keys[i];
+				vectorMap.put(keys[i], value);
+				scalarMap.put(keys[i], value);
+				long2ObjectOpenHashMap.put(keys[i], value);
+				hashLongObjMap.put(keys[i], value);
+			}
+
+			if (vectorMap.capacity() != capacity || scalarMap.capacity() != capacity || long2ObjectOpenHashMap.capacity() != capacity)
+				throw new IllegalStateException("Tables were resized while filling them to a load factor of " + loadFactor);
+			System.out.println(String.format("%d entries, loads: vector=%.3f scalar=%.3f fastutil=%.3f koloboke=%.3f", entries,
+					entries / (double) vectorMap.capacity(), entries / (double) scalarMap.capacity(),
+					entries / (double) long2ObjectOpenHashMap.capacity(), hashLongObjMap.currentLoad()));
+
+			lookupKeys = new long[entries];
+			for (int i = 0; i < entries; i++)
+				lookupKeys[i] = random.nextInt(100) < hitPercent ? keys[random.nextInt(entries)] : uniqueKey(random, used);
+		}
+
+		private static long uniqueKey(Random random, HashSet<Long> used) {
+			long key;
+			do {
+				key = random.nextLong();
+			} while (!used.add(key));
+			return key;
+		}
+	}
+
+	private static class InspectableLong2ObjectOpenHashMap extends Long2ObjectOpenHashMap<Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		InspectableLong2ObjectOpenHashMap(int expected, float loadFactor) {
+			super(expected, loadFactor);
+		}
+
+		int capacity() {
+			return n;
+		}
+	}
+
+	@Benchmark
+	public void vectorLong2ObjectMapGet(VectorContext context, Blackhole blackhole) {
+		VectorLong2ObjectMap<Object> map = context.vectorMap;
+
+		for (long key : context.lookupKeys)
+			blackhole.consume(map.get(key));
+	}
+
+	@Benchmark
+	public void scalarLong2ObjectMapGet(VectorContext context, Blackhole blackhole) { //Same table layout as above, probed without SIMD
+		VectorLong2ObjectMap<Object> map = context.scalarMap;
+
+		for (long key : context.lookupKeys)
+			blackhole.consume(map.get(key));
+	}
+
+	@Benchmark
+	public void long2ObjectOpenHashMapGet(VectorContext context, Blackhole blackhole) {
+		Long2ObjectOpenHashMap<Object> map = context.long2ObjectOpenHashMap;
+
+		for (long key : context.lookupKeys)
+			blackhole.consume(map.get(key));
+	}
+
+	@Benchmark
+	public void hashLongObjMapGet(VectorContext context, Blackhole blackhole) {
+		HashLongObjMap<Object> map = context.hashLongObjMap;
+
+		for (long key : context.lookupKeys)
+			blackhole.consume(map.get(key));
+	}
+}